@@ -3,36 +3,55 @@ package me.jbuckley.mysudokusolver;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
-import android.os.AsyncTask;
 import android.view.View;
 import android.widget.ProgressBar;
 import android.widget.Toast;
 
+import java.util.Map;
+
 import me.jbuckley.mysudokusolver.camera.CameraActivity;
-import solver.csp.Solution;
-import solver.dvo.OrderByDomain;
-import solver.strategies.ForwardChecking;
-import solver.strategies.SolveStrategy;
-import sudoku.SudokuGrid;
-
-/** Class for solving sudoku puzzle in background. */
-public class AsyncSudokuSolver extends AsyncTask<Void, Void, Void>
+import me.jbuckley.mysudokusolver.solver.CanonicalForm;
+import me.jbuckley.mysudokusolver.solver.DancingLinksSolver;
+import me.jbuckley.mysudokusolver.solver.GridStrategy;
+import me.jbuckley.mysudokusolver.solver.LogicSolver;
+import me.jbuckley.mysudokusolver.solver.PortfolioSolver;
+import me.jbuckley.mysudokusolver.solver.SolutionCache;
+import me.jbuckley.mysudokusolver.solver.SolveBudget;
+import me.jbuckley.mysudokusolver.solver.SolveMetrics;
+import me.jbuckley.mysudokusolver.solver.SolveSession;
+import me.jbuckley.mysudokusolver.solver.Technique;
+
+/** Class for solving sudoku puzzle in background, on the solver queue of the SolverService. */
+public class AsyncSudokuSolver extends ServiceTask
 {
+    // Solutions of unique puzzles, shared by every solve outside of benchmark mode.
+    private static final SolutionCache solutionCache = new SolutionCache(1024 * 1024);
+
+    // Time limits in milliseconds, capping the wait on a misread or pathological grid.
+    private static final long CAMERA_TIME_LIMIT = 2000;
+    private static final long PLAY_TIME_LIMIT = 5000;
+
+    // The running solve started last, which alone may hide the progress wheel. Main thread only.
+    private static AsyncSudokuSolver latest;
+
     private final ProgressBar progressBar;
     private final Context context;
     private final boolean fromCameraActivity;
-    private final SolveStrategy strat;
+    private final GridStrategy strat;
     private final CameraActivity cameraActivity;
     private final SudokuBoardActivity sudokuBoardActivity;
     private final char[] finalCellValues;
+    private final boolean useCache;
+    private final SolveMetrics metrics = new SolveMetrics();
+    private final SolveBudget cancellation = new SolveBudget();
+    private final long timeLimit;
 
     private Activity activity;
     private boolean isSolution = false;
-    private boolean areEnoughCells = true;
-
-    private SudokuGrid sudokuGrid;
+    private GridStrategy stoppedStrat;
+    private int solutionCount;
 
-    private Solution solution;
+    private char[] solutionCellValues;
 
     /**
      * Solve a Sudoku puzzle as a background task, whilst updating the progress wheel.
@@ -53,14 +72,43 @@ public class AsyncSudokuSolver extends AsyncTask<Void, Void, Void>
         if (fromCameraActivity) {
             cameraActivity = (CameraActivity) activity;
             sudokuBoardActivity = null;
-            strat = new ForwardChecking(new OrderByDomain());
+            // Checking for a unique solution also finds it, so no separate solve is needed. The
+            // session is kept between saves, so each correction is solved incrementally.
+            strat = cameraActivity.getSolveSession();
+            useCache = true;
+            timeLimit = CAMERA_TIME_LIMIT;
         } else {
             sudokuBoardActivity = (SudokuBoardActivity) activity;
             cameraActivity = null;
             strat = sudokuBoardActivity.getSolveStrategy();
+            useCache = !sudokuBoardActivity.isBenchmarkMode();
+            // Benchmarks run to completion unless stopped, so their results are comparable.
+            timeLimit = sudokuBoardActivity.isBenchmarkMode() ? 0 : PLAY_TIME_LIMIT;
+            strat.setRecorder(metrics);
         }
     }
 
+    /**
+     * Queue the solve. Benchmark solves wait behind any solve the user is waiting on, and a solve
+     * is rejected if too many are already queued.
+     */
+    public void start()
+    {
+        boolean benchmark = !fromCameraActivity && sudokuBoardActivity.isBenchmarkMode();
+        SolverService.getInstance().solve(this, benchmark ? SolverService.Priority.BENCHMARK
+                : SolverService.Priority.INTERACTIVE);
+    }
+
+    /**
+     * Stop the solve at the next budget check of its strategy, then cancel the task. The CSP
+     * strategies cannot be stopped part way through, so may still run to completion.
+     */
+    public void stopSolving()
+    {
+        cancellation.cancel();
+        cancel();
+    }
+
     @Override
     /** Show progress wheel before starting the grid/value extraction. */
     protected void onPreExecute()
@@ -68,107 +116,212 @@ public class AsyncSudokuSolver extends AsyncTask<Void, Void, Void>
         super.onPreExecute();
 
         isSolution = false;
+        stoppedStrat = null;
+        latest = this;
         progressBar.setVisibility(View.VISIBLE);
     }
 
     @Override
-    /** Attempt to solve puzzle. Check if there is a solution. */
-    protected Void doInBackground(Void... params)
+    /** Check the puzzle has exactly one solution, then attempt to solve it. */
+    protected void doInBackground()
     {
-        // May be less than 12 cells, causing 1000s of possible solutions.
-        areEnoughCells = areEnoughCells();
+        SolveBudget budget = new SolveBudget(cancellation, timeLimit, 0);
 
-        if (areEnoughCells) {
-            sudokuGrid = new SudokuGrid(finalCellValues, strat);
-            solution = sudokuGrid.solve();
+        CanonicalForm canonicalForm = null;
+        if (useCache) {
+            // A grid with too few givens, or whose form outlasts the budget, skips the cache.
+            canonicalForm = CanonicalForm.of(finalCellValues, budget);
+            if (canonicalForm != null) {
+                solutionCellValues = solutionCache.get(canonicalForm);
+            }
+        }
+
+        if (solutionCellValues != null) {
+            solutionCount = 1;
+        } else if (fromCameraActivity) {
+            // The session is shared by every save of the capture, and a stopped solve may still
+            // be running on another solver thread until its next budget check. That solve reads
+            // the session's budget at each check, so it is only replaced once the solve is done.
+            synchronized (strat) {
+                strat.setBudget(budget);
+                solutionCellValues = strat.solve(finalCellValues);
+                solutionCount = ((SolveSession) strat).getSolutionCount();
+                stoppedStrat = strat.isTimedOut() ? strat : null;
+            }
+        } else {
+            strat.setBudget(budget);
+
+            DancingLinksSolver counter = new DancingLinksSolver(2);
+            counter.setBudget(budget);
+            counter.solve(finalCellValues);
+            solutionCount = counter.getSolutionCount();
+            stoppedStrat = counter.isTimedOut() ? counter : null;
 
-            isSolution = solution != null;
+            if (solutionCount == 1 && stoppedStrat == null) {
+                solutionCellValues = strat.solve(finalCellValues);
+                stoppedStrat = strat.isTimedOut() ? strat : null;
+            }
         }
 
-        return null;
+        isSolution = solutionCount == 1 && solutionCellValues != null && stoppedStrat == null;
+
+        if (isSolution && canonicalForm != null) {
+            solutionCache.put(canonicalForm, solutionCellValues);
+        }
     }
 
     @Override
     /** If solution found, cells are valid, launch activity to play/solve sudoku if in Camera
      * Activity. Show values and update benchmark results if in SudokuBoardActivity. Display
      * toast messages informing user of errors.*/
-    protected void onPostExecute(Void aVoid)
+    protected void onPostExecute()
     {
-        super.onPostExecute(aVoid);
+        super.onPostExecute();
 
+        if (latest == this) {
+            latest = null;
+        }
         progressBar.setVisibility(View.INVISIBLE);
 
-        if (fromCameraActivity) {
+        if (isSolution) {
+            if (fromCameraActivity) {
+
+                // Pass the read values and solution values to the play/solve activity.
+                Intent intent = new Intent(activity.getApplicationContext(),
+                        SudokuBoardActivity.class);
+                intent.putExtra(activity.getString(R.string.intent_cells), finalCellValues);
+                intent.putExtra(activity.getString(R.string.intent_solution_cells),
+                        solutionCellValues);
+                activity.startActivity(intent);
 
-            if (areEnoughCells) {
-                if (isSolution) {
-
-                    // Pass the read values and solution values to the play/solve activity.
-                    Intent intent = new Intent(activity.getApplicationContext(),
-                            SudokuBoardActivity.class);
-                    intent.putExtra(activity.getString(R.string.intent_cells), finalCellValues);
-                    intent.putExtra(activity.getString(R.string.intent_solution_cells),
-                            sudokuGrid.getCellValues());
-                    activity.startActivity(intent);
-
-                } else {
-                    Toast.makeText(context, activity.getString(R.string.no_solution_possible),
-                            Toast.LENGTH_SHORT).show();
-                    cameraActivity.getTopText()
-                            .setText(activity.getResources().getString(R.string.verify_cells));
-                }
             } else {
 
-                cameraActivity.getTopText().setText(
-                        activity.getResources().getString(R.string.verify_cells));
+                showStatistics(strat);
+                sudokuBoardActivity.setCellValues(solutionCellValues);
+
+                if (strat instanceof PortfolioSolver) {
+                    showPortfolioResult((PortfolioSolver) strat);
+                } else if (strat instanceof LogicSolver
+                        && sudokuBoardActivity.isBenchmarkMode()) {
+                    showLogicResult((LogicSolver) strat);
+                }
+            }
+        } else if (stoppedStrat != null) {
+            // Show how far the search got before giving up.
+            if (!fromCameraActivity) {
+                showStatistics(stoppedStrat);
             }
-        } else {
-            if (areEnoughCells) {
-                if (isSolution) {
 
-                    sudokuBoardActivity.setAssignmentsValue(String.valueOf(strat.getAssignments()));
-                    sudokuBoardActivity.setTimeValue(String.valueOf(strat.getTimeTaken()) + "ms");
-                    sudokuBoardActivity.setCellValues(sudokuGrid.getCellValues());
+            Toast.makeText(context, activity.getString(R.string.solve_timed_out,
+                    stoppedStrat.getTimeTaken(), stoppedStrat.getAssignments()),
+                    Toast.LENGTH_LONG).show();
 
-                } else {
-                    Toast.makeText(context,
-                            activity.getResources().getString(R.string.no_solution_possible),
-                            Toast.LENGTH_SHORT).show();
-                }
-            } else {
+            if (fromCameraActivity) {
+                cameraActivity.getTopText()
+                        .setText(activity.getResources().getString(R.string.verify_cells));
+            }
+        } else {
+            int message = solutionCount > 1 ? R.string.multiple_solutions_possible
+                    : R.string.no_solution_possible;
+            Toast.makeText(context, activity.getString(message), Toast.LENGTH_SHORT).show();
 
-                cameraActivity.getTopText().setText(
-                        activity.getResources().getString(R.string.verify_cells));
+            if (fromCameraActivity) {
+                cameraActivity.getTopText()
+                        .setText(activity.getResources().getString(R.string.verify_cells));
             }
         }
     }
 
     @Override
+    /** Make sure the solve stops too, however the task was cancelled. */
     protected void onCancelled()
     {
         super.onCancelled();
-        progressBar.setVisibility(View.GONE);
+        cancellation.cancel();
+
+        // A solve replaced by a newer one finishes while the newer one is still running.
+        if (latest == this) {
+            latest = null;
+            progressBar.setVisibility(View.GONE);
+        }
+    }
+
+    @Override
+    /** Too many solves are already queued, so ask the user to wait for them. */
+    protected void onRejected()
+    {
+        super.onRejected();
+        Toast.makeText(context, activity.getString(R.string.solver_busy), Toast.LENGTH_SHORT)
+                .show();
+
+        if (fromCameraActivity) {
+            cameraActivity.getTopText()
+                    .setText(activity.getResources().getString(R.string.verify_cells));
+        }
     }
 
     /**
-     * Check if there are at least 12 cells detected. This is to prevent puzzles with 1000s of
-     * possible solutions from being used.
+     * Show the assignments, time and metrics of the last solve in the benchmark results, with the
+     * wait for a solver thread.
+     *
+     * @param solved The strategy which made the last solve.
      */
-    private boolean areEnoughCells()
+    private void showStatistics(GridStrategy solved)
     {
-        boolean result = false;
-        int totalDigits = 0;
-
-        for (char finalCellValue : finalCellValues) {
-            if (finalCellValue != ' ') {
-                totalDigits++;
-                if (totalDigits > 11) {
-                    result = true;
-                    break;
-                }
+        TaskQueue queue = SolverService.getInstance().getSolverQueue();
+        String queueSummary = activity.getString(R.string.queue_summary,
+                queue.getMeanWaitMillis(), queue.getMaxWaitMillis(), queue.getDepth(),
+                queue.getPeakDepth(), queue.getRejected());
+
+        sudokuBoardActivity.setAssignmentsValue(String.valueOf(solved.getAssignments()));
+        sudokuBoardActivity.setTimeValue(String.valueOf(solved.getTimeTaken()) + "ms");
+        sudokuBoardActivity.setMetricsValue(activity.getString(R.string.metrics_summary,
+                metrics.getBacktracks(), metrics.getPropagations(),
+                metrics.getWipeouts(), metrics.getMaxDepth(),
+                metrics.getNodesPerSecond(), metrics.getPropagationNanos() / 1e6,
+                metrics.getSearchNanos() / 1e6) + "\n" + queueSummary);
+    }
+
+    /**
+     * Inform the user which strategy won the race, and how far each of the others had got.
+     *
+     * @param portfolio The portfolio which solved the puzzle.
+     */
+    private void showPortfolioResult(PortfolioSolver portfolio)
+    {
+        StringBuilder losers = new StringBuilder();
+        for (Map.Entry<String, Long> loser : portfolio.getLoserAssignments().entrySet()) {
+            // A loser which could not be stopped has no count to show.
+            String count = loser.getValue() != null ? String.valueOf(loser.getValue())
+                    : activity.getString(R.string.still_running);
+            losers.append('\n').append(loser.getKey()).append(": ").append(count);
+        }
+
+        Toast.makeText(context, activity.getString(R.string.portfolio_result,
+                portfolio.getWinner(), losers.toString()), Toast.LENGTH_LONG).show();
+    }
+
+    /**
+     * Inform the user how many deductions each logical technique made, and whether any search was
+     * needed after them.
+     *
+     * @param logicSolver The strategy which solved the puzzle.
+     */
+    private void showLogicResult(LogicSolver logicSolver)
+    {
+        String[] names = activity.getResources().getStringArray(R.array.technique_array);
+
+        StringBuilder hits = new StringBuilder();
+        for (Technique technique : Technique.values()) {
+            long total = logicSolver.getHits(technique);
+            if (total > 0) {
+                hits.append('\n').append(names[technique.ordinal()]).append(": ").append(total);
             }
         }
 
-        return result;
+        int message = logicSolver.isSolvedByLogic() ? R.string.logic_result
+                : R.string.logic_result_with_search;
+        Toast.makeText(context, activity.getString(message, hits.toString()),
+                Toast.LENGTH_LONG).show();
     }
 }
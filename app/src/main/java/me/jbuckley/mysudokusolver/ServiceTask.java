@@ -0,0 +1,113 @@
+package me.jbuckley.mysudokusolver;
+
+/**
+ * Background work run on one of the SolverService executors, with the same callbacks as an
+ * AsyncTask. onPreExecute runs on the main thread when the task is submitted, doInBackground on a
+ * worker thread, then onPostExecute or onCancelled back on the main thread.
+ */
+public abstract class ServiceTask implements Runnable, Comparable<ServiceTask>
+{
+    private volatile boolean cancelled;
+
+    private TaskQueue queue;
+    private SolverService.Priority priority;
+    private long sequence;
+    private long queuedAt;
+
+    /** Called on the main thread before the task is queued. */
+    protected void onPreExecute()
+    {
+    }
+
+    /** The work of the task, run on a worker thread. */
+    protected abstract void doInBackground();
+
+    /** Called on the main thread once doInBackground has finished, unless cancelled. */
+    protected void onPostExecute()
+    {
+    }
+
+    /** Called on the main thread instead of onPostExecute if the task was cancelled. */
+    protected void onCancelled()
+    {
+    }
+
+    /**
+     * Called on the main thread instead of running the task when its queue is full. The default
+     * treats the task as cancelled.
+     */
+    protected void onRejected()
+    {
+        onCancelled();
+    }
+
+    /**
+     * Stop the task. A task still queued is removed and onCancelled is called straight away, and
+     * a running task finishes doInBackground then has onCancelled called instead of
+     * onPostExecute. doInBackground can check isCancelled to stop early.
+     */
+    public final void cancel()
+    {
+        cancelled = true;
+
+        if (queue != null && queue.remove(this)) {
+            onCancelled();
+        }
+    }
+
+    /** @return True if cancel has been called. */
+    public final boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    @Override
+    public final void run()
+    {
+        queue.taskStarted(System.nanoTime() - queuedAt);
+
+        if (!cancelled) {
+            doInBackground();
+        }
+
+        queue.taskFinished(this);
+    }
+
+    /** Tasks of higher priority run first, then tasks in the order they were queued. */
+    @Override
+    public final int compareTo(ServiceTask other)
+    {
+        int result = priority.compareTo(other.priority);
+
+        if (result == 0) {
+            result = sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+
+        return result;
+    }
+
+    /**
+     * Record where the task is being queued, just before it is.
+     *
+     * @param queue The queue the task is being added to.
+     * @param priority The priority of the task.
+     * @param sequence The number of tasks queued before it.
+     */
+    final void queued(TaskQueue queue, SolverService.Priority priority, long sequence)
+    {
+        this.queue = queue;
+        this.priority = priority;
+        this.sequence = sequence;
+        this.queuedAt = System.nanoTime();
+    }
+
+    /** Call onPostExecute, or onCancelled if the task was cancelled while it ran. */
+    final void finish()
+    {
+        if (cancelled) {
+            onCancelled();
+        } else {
+            onPostExecute();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package me.jbuckley.mysudokusolver;
+
+/**
+ * The background threads of the app. Solving and reading captured grids have separate queues,
+ * so a long benchmark solve cannot hold up the digit recognition of the next capture. Within the
+ * solver queue, interactive solves go ahead of any waiting benchmark solves.
+ */
+public class SolverService
+{
+    /** The order in which queued tasks run. Earlier priorities run first. */
+    public enum Priority
+    {
+        INTERACTIVE, BENCHMARK
+    }
+
+    private static final int SOLVER_CAPACITY = 8;
+
+    // Reading a grid needs the memory of several full size images, so captures are read singly.
+    private static final int VISION_THREADS = 1;
+    private static final int VISION_CAPACITY = 2;
+
+    private static SolverService instance;
+
+    private final TaskQueue solverQueue;
+    private final TaskQueue visionQueue;
+
+    /** @return The service shared by every activity. Call on the main thread. */
+    public static SolverService getInstance()
+    {
+        if (instance == null) {
+            instance = new SolverService();
+        }
+
+        return instance;
+    }
+
+    private SolverService()
+    {
+        // Leave a core for the main thread.
+        int solverThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+        solverQueue = new TaskQueue("solver", solverThreads, SOLVER_CAPACITY);
+        visionQueue = new TaskQueue("vision", VISION_THREADS, VISION_CAPACITY);
+    }
+
+    /**
+     * Queue a solve.
+     *
+     * @param task The solve to run.
+     * @param priority INTERACTIVE for solves the user is waiting on, BENCHMARK otherwise.
+     * @return False if the queue was full, so the task was rejected.
+     */
+    public boolean solve(ServiceTask task, Priority priority)
+    {
+        return solverQueue.submit(task, priority);
+    }
+
+    /**
+     * Queue the generation of a puzzle, which the user is waiting on.
+     *
+     * @param task The generation to run.
+     * @return False if the queue was full, so the task was rejected.
+     */
+    public boolean generate(ServiceTask task)
+    {
+        return solverQueue.submit(task, Priority.INTERACTIVE);
+    }
+
+    /**
+     * Queue the reading of a captured grid.
+     *
+     * @param task The reading to run.
+     * @return False if the queue was full, so the task was rejected.
+     */
+    public boolean read(ServiceTask task)
+    {
+        return visionQueue.submit(task, Priority.INTERACTIVE);
+    }
+
+    /** @return The queue of solves, for its metrics. */
+    public TaskQueue getSolverQueue()
+    {
+        return solverQueue;
+    }
+
+    /** @return The queue of captured grids to read, for its metrics. */
+    public TaskQueue getVisionQueue()
+    {
+        return visionQueue;
+    }
+}
@@ -18,6 +18,23 @@ import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import java.util.Random;
+
+import me.jbuckley.mysudokusolver.solver.BitboardSolver;
+import me.jbuckley.mysudokusolver.solver.CspGridStrategy;
+import me.jbuckley.mysudokusolver.solver.DancingLinksSolver;
+import me.jbuckley.mysudokusolver.solver.Deduction;
+import me.jbuckley.mysudokusolver.solver.ForkJoinSolver;
+import me.jbuckley.mysudokusolver.solver.GridStrategy;
+import me.jbuckley.mysudokusolver.solver.HintFinder;
+import me.jbuckley.mysudokusolver.solver.LogicSolver;
+import me.jbuckley.mysudokusolver.solver.NogoodSolver;
+import me.jbuckley.mysudokusolver.solver.PortfolioSolver;
+import me.jbuckley.mysudokusolver.solver.PuzzleGenerator;
+import me.jbuckley.mysudokusolver.solver.RestartSolver;
+import me.jbuckley.mysudokusolver.solver.SatSolver;
+import me.jbuckley.mysudokusolver.solver.Technique;
+import me.jbuckley.mysudokusolver.solver.TrailSolver;
 import me.jbuckley.mysudokusolver.styles.DefaultCellStyle;
 import solver.dvo.OrderByDomain;
 import solver.strategies.BasicBacktracking;
@@ -26,7 +43,6 @@ import solver.strategies.GAC;
 import solver.strategies.InitialGAC;
 import solver.strategies.InitialSAC;
 import solver.strategies.SAC;
-import solver.strategies.SolveStrategy;
 
 public class SudokuBoardActivity extends Activity
 {
@@ -40,6 +56,7 @@ public class SudokuBoardActivity extends Activity
     private Button solveButtonPlay;
     private RelativeLayout playLayoutTop;
     private Button checkCellsButton;
+    private Button hintButton;
     private RelativeLayout benchmarkLayoutTop;
     private Spinner strategySpinner;
     private RelativeLayout playLayoutBottom;
@@ -47,6 +64,7 @@ public class SudokuBoardActivity extends Activity
     private Button resetButton;
     private TextView assignmentsValue;
     private TextView timeValue;
+    private TextView metricsValue;
 
     private char[] cellValues;
     private Context context;
@@ -57,6 +75,8 @@ public class SudokuBoardActivity extends Activity
     private char[] cellSolutionValues;
     private ProgressBar progressBar;
     private AsyncSudokuSolver solver;
+    private HintFinder hintFinder;
+    private AsyncPuzzleGenerator generator;
 
     @Override
     protected void onCreate(Bundle savedInstanceState)
@@ -67,6 +87,7 @@ public class SudokuBoardActivity extends Activity
 
         playLayoutTop = (RelativeLayout) findViewById(R.id.play_layout_top);
         checkCellsButton = (Button) findViewById(R.id.check_cells_button);
+        hintButton = (Button) findViewById(R.id.hint_button);
         benchmarkLayoutTop = (RelativeLayout) findViewById(R.id.benchmark_layout_top);
         strategySpinner = (Spinner) findViewById(R.id.strategy_spinner);
         solveButtonBench = (Button) findViewById(R.id.solve_button_bench);
@@ -81,12 +102,27 @@ public class SudokuBoardActivity extends Activity
         resetButton = (Button) findViewById(R.id.reset_button);
         assignmentsValue = (TextView) findViewById(R.id.ass_value_text);
         timeValue = (TextView) findViewById(R.id.time_value_text);
+        metricsValue = (TextView) findViewById(R.id.metrics_value_text);
 
         context = this;
 
         initialize();
     }
 
+    @Override
+    protected void onPause()
+    {
+        super.onPause();
+
+        // Nothing would be shown of a solve or generation still running, so stop them.
+        if (solver != null) {
+            solver.stopSolving();
+        }
+        if (generator != null) {
+            generator.cancel();
+        }
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu)
     {
@@ -114,6 +150,9 @@ public class SudokuBoardActivity extends Activity
                     initLayouts();
                 }
                 break;
+            case R.id.generate_puzzle:
+                generatePuzzle();
+                break;
         }
 
         return true;
@@ -157,6 +196,7 @@ public class SudokuBoardActivity extends Activity
             benchmarkLayoutBottom.setVisibility(View.GONE);
 
             checkCellsButton.setOnClickListener(checkOnClick());
+            hintButton.setOnClickListener(hintOnClick());
             solveButtonPlay.setOnClickListener(solveOnClick());
         }
     }
@@ -178,6 +218,20 @@ public class SudokuBoardActivity extends Activity
         sudokuBoardView.setAsSolidCell();
     }
 
+    /**
+     * Generate a new puzzle in the background, on the solver queue of the SolverService. Any
+     * generation still running is replaced.
+     */
+    private void generatePuzzle()
+    {
+        if (generator != null) {
+            generator.cancel();
+        }
+
+        generator = new AsyncPuzzleGenerator();
+        SolverService.getInstance().generate(generator);
+    }
+
     /** Initialise the digits. */
     private void initDigits()
     {
@@ -207,44 +261,142 @@ public class SudokuBoardActivity extends Activity
      *
      * @return The selected strategy.
      */
-    public SolveStrategy getSolveStrategy()
+    public GridStrategy getSolveStrategy()
     {
-        SolveStrategy result;
+        GridStrategy result;
 
         if (benchmarkMode) {
             switch (strategySpinner.getSelectedItemPosition()) {
                 case (0):
-                    result = new BasicBacktracking();
+                    result = new CspGridStrategy(new BasicBacktracking());
                     break;
                 case (1):
-                    result = new ForwardChecking();
+                    result = new CspGridStrategy(new ForwardChecking());
                     break;
                 case (2):
-                    result = new ForwardChecking(new OrderByDomain());
+                    result = new CspGridStrategy(new ForwardChecking(new OrderByDomain()));
                     break;
                 case (3):
-                    result = new GAC();
+                    result = new CspGridStrategy(new GAC());
                     break;
                 case (4):
-                    result = new InitialGAC();
+                    result = new CspGridStrategy(new InitialGAC());
                     break;
                 case (5):
-                    result = new SAC();
+                    result = new CspGridStrategy(new SAC());
                     break;
                 case (6):
-                    result = new InitialSAC();
+                    result = new CspGridStrategy(new InitialSAC());
+                    break;
+                case (7):
+                    result = new BitboardSolver();
+                    break;
+                case (8):
+                    result = new DancingLinksSolver();
+                    break;
+                case (9):
+                    result = createPortfolio();
+                    break;
+                case (10):
+                    result = new ForkJoinSolver();
+                    break;
+                case (11):
+                    result = new LogicSolver(new CspGridStrategy(new InitialSAC()));
+                    break;
+                case (12):
+                    result = new TrailSolver(TrailSolver.Consistency.FORWARD_CHECKING);
+                    break;
+                case (13):
+                    result = new TrailSolver(TrailSolver.Consistency.GAC);
+                    break;
+                case (14):
+                    result = new TrailSolver(TrailSolver.Consistency.SAC);
+                    break;
+                case (15):
+                    result = new NogoodSolver();
+                    break;
+                case (16):
+                    result = new SatSolver();
+                    break;
+                case (17):
+                    result = new TrailSolver(TrailSolver.Consistency.FORWARD_CHECKING,
+                            TrailSolver.Ordering.DOM_WDEG);
+                    break;
+                case (18):
+                    result = new TrailSolver(TrailSolver.Consistency.GAC,
+                            TrailSolver.Ordering.DOM_WDEG);
+                    break;
+                case (19):
+                    result = new TrailSolver(TrailSolver.Consistency.SAC,
+                            TrailSolver.Ordering.DOM_WDEG);
+                    break;
+                case (20):
+                    result = new TrailSolver(TrailSolver.Consistency.FORWARD_CHECKING,
+                            TrailSolver.Ordering.IMPACT);
+                    break;
+                case (21):
+                    result = new TrailSolver(TrailSolver.Consistency.GAC,
+                            TrailSolver.Ordering.IMPACT);
+                    break;
+                case (22):
+                    result = new TrailSolver(TrailSolver.Consistency.SAC,
+                            TrailSolver.Ordering.IMPACT);
+                    break;
+                case (23):
+                    result = new RestartSolver(new BitboardSolver(), RestartSolver.Policy.LUBY);
+                    break;
+                case (24):
+                    result = new RestartSolver(new BitboardSolver(),
+                            RestartSolver.Policy.GEOMETRIC);
+                    break;
+                case (25):
+                    result = new RestartSolver(
+                            new TrailSolver(TrailSolver.Consistency.FORWARD_CHECKING,
+                                    TrailSolver.Ordering.DOM_WDEG), RestartSolver.Policy.LUBY);
+                    break;
+                case (26):
+                    result = new RestartSolver(new TrailSolver(TrailSolver.Consistency.GAC,
+                            TrailSolver.Ordering.DOM_WDEG), RestartSolver.Policy.LUBY);
+                    break;
+                case (27):
+                    result = new TrailSolver(TrailSolver.Consistency.ALL_DIFFERENT);
+                    break;
+                case (28):
+                    result = new TrailSolver(TrailSolver.Consistency.ALL_DIFFERENT,
+                            TrailSolver.Ordering.DOM_WDEG);
                     break;
                 default:
-                    result = new InitialSAC();
+                    result = new CspGridStrategy(new InitialSAC());
                     break;
             }
         } else {
-            result = new InitialSAC();
+            // Most puzzles need no search, so logic alone answers them without SAC. The rest are
+            // searched with SAC maintained on the trail.
+            result = new LogicSolver(new TrailSolver(TrailSolver.Consistency.SAC));
         }
 
         return result;
     }
 
+    /**
+     * Create a portfolio racing strategies which check their budget, so the losers stop as soon as
+     * the race is decided.
+     *
+     * @return The portfolio strategy.
+     */
+    private GridStrategy createPortfolio()
+    {
+        return new PortfolioSolver()
+                .add("Bitboard", new BitboardSolver())
+                .add("Dancing links", new DancingLinksSolver())
+                .add("Forwardchecking dom/wdeg",
+                        new TrailSolver(TrailSolver.Consistency.FORWARD_CHECKING,
+                                TrailSolver.Ordering.DOM_WDEG))
+                .add("GAC", new TrailSolver(TrailSolver.Consistency.GAC))
+                .add("SAC", new TrailSolver(TrailSolver.Consistency.SAC))
+                .add("All-different", new TrailSolver(TrailSolver.Consistency.ALL_DIFFERENT));
+    }
+
     /** Obtain the solution values passed when launching the activity. */
     private char[] getSolutionValuesFromIntent()
     {
@@ -271,6 +423,11 @@ public class SudokuBoardActivity extends Activity
         return result;
     }
 
+    public boolean isBenchmarkMode()
+    {
+        return benchmarkMode;
+    }
+
     public void setAssignmentsValue(String s)
     {
         assignmentsValue.setText(s);
@@ -281,6 +438,11 @@ public class SudokuBoardActivity extends Activity
         timeValue.setText(s);
     }
 
+    public void setMetricsValue(String s)
+    {
+        metricsValue.setText(s);
+    }
+
     public void setCellValues(char[] cellValues)
     {
         sudokuBoardView.setCellValues(cellValues);
@@ -311,6 +473,38 @@ public class SudokuBoardActivity extends Activity
         };
     }
 
+    /**
+     * Hint button clicked, select the next cell which can be filled by logic and name the
+     * technique needed. The HintFinder carries on from the last hint, so this is fast enough to
+     * call after every change to the board.
+     */
+    private View.OnClickListener hintOnClick()
+    {
+        return new View.OnClickListener()
+        {
+            public void onClick(View view)
+            {
+                if (hintFinder == null) {
+                    hintFinder = new HintFinder();
+                }
+
+                Deduction hint = hintFinder.nextHint(sudokuBoardView.getCellValues());
+                if (hint != null) {
+                    String[] techniques = getResources().getStringArray(R.array.technique_array);
+                    sudokuBoardView.getCells().get(hint.getCell()).requestFocus();
+
+                    Toast.makeText(context, getResources().getString(R.string.hint,
+                            hint.getCell() / 9 + 1, hint.getCell() % 9 + 1,
+                            techniques[hint.getTechnique().ordinal()]),
+                            Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(context, getResources().getString(R.string.no_hint),
+                            Toast.LENGTH_SHORT).show();
+                }
+            }
+        };
+    }
+
     /** Solve button clicked, display progress wheel and show values and benchmark results. */
     private View.OnClickListener solveOnClick()
     {
@@ -318,9 +512,13 @@ public class SudokuBoardActivity extends Activity
         {
             public void onClick(View view)
             {
+                // A result of the previous solve would overwrite the board.
+                if (solver != null) {
+                    solver.stopSolving();
+                }
                 solver = new AsyncSudokuSolver(SudokuBoardActivity.this,
                         progressBar, sudokuBoardView.getCellValues());
-                solver.execute();
+                solver.start();
             }
         };
     }
@@ -335,10 +533,15 @@ public class SudokuBoardActivity extends Activity
         {
             public void onClick(View view)
             {
+                if (solver != null) {
+                    solver.stopSolving();
+                }
+
                 cellValues = startCellValues;
                 sudokuBoardView.setCellValues(cellValues);
                 assignmentsValue.setText("");
                 timeValue.setText("");
+                metricsValue.setText("");
             }
         };
     }
@@ -375,4 +578,83 @@ public class SudokuBoardActivity extends Activity
         };
     }
 
+    /**
+     * Class for generating a puzzle on another thread. The puzzle replaces the board, and also
+     * becomes the starting point for a benchmark reset.
+     */
+    private class AsyncPuzzleGenerator extends ServiceTask
+    {
+        // Each generation has its own generator, as a replaced one may still be running.
+        private final PuzzleGenerator puzzleGenerator = new PuzzleGenerator();
+
+        private char[] puzzle;
+
+        @Override
+        /** Show progress wheel before generating. */
+        protected void onPreExecute()
+        {
+            super.onPreExecute();
+            progressBar.setVisibility(View.VISIBLE);
+        }
+
+        @Override
+        /** Generate the puzzle and rate it. */
+        protected void doInBackground()
+        {
+            puzzle = puzzleGenerator.generate(new Random());
+        }
+
+        @Override
+        /** Hide progress wheel. Show the puzzle, and inform of its rating via toast. */
+        protected void onPostExecute()
+        {
+            super.onPostExecute();
+            generator = null;
+            progressBar.setVisibility(View.GONE);
+
+            // A solve started while generating would be of the old puzzle.
+            if (solver != null) {
+                solver.stopSolving();
+            }
+
+            cellValues = puzzle;
+            cellSolutionValues = puzzleGenerator.getSolution();
+            startCellValues = cellValues;
+            hintFinder = null;
+
+            sudokuBoardView.setCellStyle(new DefaultCellStyle(context));
+            sudokuBoardView.setCellValues(cellValues);
+            sudokuBoardView.setAsSolidCell();
+            assignmentsValue.setText("");
+            timeValue.setText("");
+            metricsValue.setText("");
+
+            Technique rating = puzzleGenerator.getRating();
+            String ratingName = rating != null
+                    ? getResources().getStringArray(R.array.technique_array)[rating.ordinal()]
+                    : getString(R.string.search_rating);
+            Toast.makeText(context, getString(R.string.generated_puzzle, ratingName),
+                    Toast.LENGTH_SHORT).show();
+        }
+
+        @Override
+        /** Hide progress wheel, unless a newer generation has replaced this one. */
+        protected void onCancelled()
+        {
+            super.onCancelled();
+
+            if (generator == this) {
+                generator = null;
+                progressBar.setVisibility(View.GONE);
+            }
+        }
+
+        @Override
+        /** Too many solves are already queued, so ask the user to wait for them. */
+        protected void onRejected()
+        {
+            super.onRejected();
+            Toast.makeText(context, R.string.solver_busy, Toast.LENGTH_SHORT).show();
+        }
+    }
 }
@@ -0,0 +1,208 @@
+package me.jbuckley.mysudokusolver;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed pool of worker threads taking ServiceTasks from a bounded priority queue. A task
+ * submitted while the queue is full is rejected rather than queued, so a burst of requests
+ * cannot build up an unbounded backlog. The depth of the queue and the time tasks wait in it are
+ * kept for display.
+ */
+public class TaskQueue
+{
+    private final String name;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final BoundedPriorityQueue queue;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicInteger peakDepth = new AtomicInteger();
+
+    /**
+     * Create a new TaskQueue and start its threads.
+     *
+     * @param name The name of the queue, used for its threads.
+     * @param threads The number of worker threads.
+     * @param capacity The number of tasks which can wait for a thread.
+     */
+    public TaskQueue(final String name, int threads, int capacity)
+    {
+        this.name = name;
+        this.queue = new BoundedPriorityQueue(capacity);
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(final Runnable runnable)
+            {
+                return new Thread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        // Keep the workers from competing with the main thread, as AsyncTask does.
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, name + "-" + threadCount.incrementAndGet());
+            }
+        };
+
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue,
+                threadFactory);
+        executor.prestartAllCoreThreads();
+    }
+
+    /**
+     * Queue a task, calling its onPreExecute first. If the queue is full, onRejected is called
+     * instead of running the task. Call on the main thread.
+     *
+     * @param task The task to run.
+     * @param priority The priority of the task.
+     * @return False if the task was rejected.
+     */
+    public boolean submit(ServiceTask task, SolverService.Priority priority)
+    {
+        boolean result = true;
+
+        task.onPreExecute();
+        task.queued(this, priority, sequence.getAndIncrement());
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            task.onRejected();
+            result = false;
+        }
+
+        int depth = queue.size();
+        int peak = peakDepth.get();
+        while (depth > peak && !peakDepth.compareAndSet(peak, depth)) {
+            peak = peakDepth.get();
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove a task which has not started yet.
+     *
+     * @return True if the task was still queued.
+     */
+    boolean remove(ServiceTask task)
+    {
+        return executor.remove(task);
+    }
+
+    /**
+     * Record the wait of a task which has been taken from the queue.
+     *
+     * @param waitNanos The time since the task was queued.
+     */
+    void taskStarted(long waitNanos)
+    {
+        started.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+
+        long max = maxWaitNanos.get();
+        while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+            max = maxWaitNanos.get();
+        }
+    }
+
+    /** Deliver the result of a task which has finished running to the main thread. */
+    void taskFinished(final ServiceTask task)
+    {
+        mainHandler.post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                task.finish();
+            }
+        });
+    }
+
+    /** @return The name of the queue. */
+    public String getName()
+    {
+        return name;
+    }
+
+    /** @return The number of tasks waiting for a thread. */
+    public int getDepth()
+    {
+        return queue.size();
+    }
+
+    /** @return The most tasks which have waited for a thread at once. */
+    public int getPeakDepth()
+    {
+        return peakDepth.get();
+    }
+
+    /** @return The number of tasks which have been taken from the queue. */
+    public long getStarted()
+    {
+        return started.get();
+    }
+
+    /** @return The number of tasks rejected because the queue was full. */
+    public long getRejected()
+    {
+        return rejected.get();
+    }
+
+    /** @return The average time tasks have waited for a thread, in milliseconds. */
+    public double getMeanWaitMillis()
+    {
+        long count = started.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / 1e6 / count;
+    }
+
+    /** @return The longest time a task has waited for a thread, in milliseconds. */
+    public double getMaxWaitMillis()
+    {
+        return maxWaitNanos.get() / 1e6;
+    }
+
+    /** A priority queue which refuses new tasks once it holds its capacity. */
+    private static class BoundedPriorityQueue extends PriorityBlockingQueue<Runnable>
+    {
+        private final int capacity;
+
+        private BoundedPriorityQueue(int capacity)
+        {
+            this.capacity = capacity;
+        }
+
+        /** Synchronized so that two tasks cannot both take the last place. */
+        @Override
+        public synchronized boolean offer(Runnable runnable)
+        {
+            return size() < capacity && super.offer(runnable);
+        }
+
+        @Override
+        public int remainingCapacity()
+        {
+            return Math.max(0, capacity - size());
+        }
+    }
+}
@@ -4,7 +4,6 @@ import android.app.Activity;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.hardware.Camera;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.Gravity;
@@ -19,8 +18,11 @@ import android.widget.Toast;
 import me.jbuckley.mysudokusolver.AsyncSudokuSolver;
 import me.jbuckley.mysudokusolver.CellView;
 import me.jbuckley.mysudokusolver.R;
+import me.jbuckley.mysudokusolver.ServiceTask;
+import me.jbuckley.mysudokusolver.SolverService;
 import me.jbuckley.mysudokusolver.SudokuBoardView;
 import me.jbuckley.mysudokusolver.camera.imageprocessing.GridProcessor;
+import me.jbuckley.mysudokusolver.solver.SolveSession;
 import me.jbuckley.mysudokusolver.styles.CameraCellStyle;
 
 /** Take a photo of a sudoku grid and read the values for quick input. */
@@ -47,6 +49,8 @@ public class CameraActivity extends Activity
     private Context context;
     private ProgressBar progressBar;
     private TextView topText;
+    private AsyncSudokuSolver solver;
+    private SolveSession solveSession;
 
     @Override
     public void onCreate(Bundle savedInstanceState)
@@ -75,9 +79,22 @@ public class CameraActivity extends Activity
         initialize();
     }
 
+    @Override
+    protected void onPause()
+    {
+        super.onPause();
+
+        if (solver != null) {
+            solver.stopSolving();
+        }
+    }
+
     /** Perform initial setup before an image has been captured. */
     private void initialize()
     {
+        // A new capture starts a new puzzle, so nothing from the last session is reused.
+        solveSession = new SolveSession();
+
         initSudokuBoard();
         initButtonsBeforeCapture();
 
@@ -177,7 +194,8 @@ public class CameraActivity extends Activity
     }
 
     /**
-     * Take the captured camera data, and extract the grid. Perform in background.
+     * Take the captured camera data, and extract the grid. Perform in background, on the vision
+     * queue of the SolverService so that no solve can hold it up.
      *
      * @param data The raw camera captured image data.
      */
@@ -186,7 +204,7 @@ public class CameraActivity extends Activity
         GridProcessor gridFinder = new GridProcessor(this, data, sudokuBoardView);
         AsyncGridValueExtractor extractor = new AsyncGridValueExtractor(gridFinder);
 
-        extractor.execute();
+        SolverService.getInstance().read(extractor);
     }
 
     /**
@@ -284,6 +302,10 @@ public class CameraActivity extends Activity
         {
             public void onClick(View view)
             {
+                if (solver != null) {
+                    solver.stopSolving();
+                }
+
                 initialize();
                 cameraPreview.startPreview();
             }
@@ -298,9 +320,12 @@ public class CameraActivity extends Activity
             public void onClick(View view)
             {
                 topText.setText(getResources().getString(R.string.verifying_cells));
-                AsyncSudokuSolver solver = new AsyncSudokuSolver(CameraActivity.this, progressBar,
+                if (solver != null) {
+                    solver.stopSolving();
+                }
+                solver = new AsyncSudokuSolver(CameraActivity.this, progressBar,
                         sudokuBoardView.getCellValues());
-                solver.execute();
+                solver.start();
             }
         };
     }
@@ -342,8 +367,14 @@ public class CameraActivity extends Activity
         return topText;
     }
 
+    /** @return The session solving each correction of the captured values. */
+    public SolveSession getSolveSession()
+    {
+        return solveSession;
+    }
+
     /** Class for performing the grid value extracting on another thread. */
-    private class AsyncGridValueExtractor extends AsyncTask<Void, Void, Void>
+    private class AsyncGridValueExtractor extends ServiceTask
     {
         private final GridProcessor gridProcessor;
 
@@ -373,7 +404,7 @@ public class CameraActivity extends Activity
 
         @Override
         /** Find grid and read values. */
-        protected Void doInBackground(Void... params)
+        protected void doInBackground()
         {
             // Find grid. Display error message if exception thrown (failed to find grid).
             try {
@@ -397,15 +428,13 @@ public class CameraActivity extends Activity
                     errorMessage = R.string.failed_to_read_digits_toast;
                 }
             }
-
-            return null;
         }
 
         @Override
         /** Hide progress wheel. Display captured values or inform of failure via toast. */
-        protected void onPostExecute(Void aVoid)
+        protected void onPostExecute()
         {
-            super.onPostExecute(aVoid);
+            super.onPostExecute();
             progressBar.setVisibility(View.GONE);
             enableButton(captureButton);
 
@@ -417,5 +446,17 @@ public class CameraActivity extends Activity
                 showCapturedValues(cellValues, warpedBitmap);
             }
         }
+
+        @Override
+        /** The last capture is still being read, so restart the preview for another attempt. */
+        protected void onRejected()
+        {
+            super.onRejected();
+            progressBar.setVisibility(View.GONE);
+            enableButton(captureButton);
+
+            Toast.makeText(context, R.string.reader_busy, Toast.LENGTH_SHORT).show();
+            cameraPreview.startPreview();
+        }
     }
 }
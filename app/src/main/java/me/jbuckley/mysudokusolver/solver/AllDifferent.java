@@ -0,0 +1,193 @@
+package me.jbuckley.mysudokusolver.solver;
+
+import java.util.Arrays;
+
+/**
+ * Regin's all-different propagator for the 27 units, over the domains of a DomainTrail. Each
+ * unit keeps a matching of its 9 cells to the 9 digits, and a candidate is consistent with the
+ * unit exactly when it lies on a cycle of alternating matched and unmatched edges, or is itself
+ * matched. This removes the candidates excluded by hidden singles, naked and hidden pairs,
+ * triples and so on, which the not-equal constraints between pairs of cells miss.
+ *
+ * A unit has as many digits as cells, so every digit is matched and the cycles are found as the
+ * strongly connected components of a graph on the unit's cells alone, with an edge from each
+ * cell to the cell matched to each of its other candidates. With 9 cells the reachability of
+ * each is a 9-bit mask, closed transitively a word at a time.
+ *
+ * The matchings are not trailed. Undoing changes only gives back candidates, so a matching stays
+ * valid when the search backtracks, and is repaired with augmenting paths when a matched
+ * candidate is removed.
+ */
+final class AllDifferent
+{
+    private static final int SLOTS = ConstraintGraph.UNIT_COUNT * Bitboard.SIZE;
+
+    private final DomainTrail store;
+
+    // The digit matched to each cell of each unit, by position in the unit, and the position
+    // matched to each digit of each unit. -1 for neither.
+    private final int[] digitOf = new int[SLOTS];
+    private final int[] positionOf = new int[SLOTS];
+
+    // The positions each position of the unit being filtered can reach.
+    private final int[] reach = new int[Bitboard.SIZE];
+
+    private int visited;
+    private int dirty;
+    private int scanned;
+
+    /**
+     * Create a new AllDifferent.
+     *
+     * @param store The domains to filter.
+     */
+    AllDifferent(DomainTrail store)
+    {
+        this.store = store;
+        Arrays.fill(digitOf, -1);
+        Arrays.fill(positionOf, -1);
+    }
+
+    /**
+     * Make every unit with a cell changed since the trail position consistent, and so on for the
+     * units of every cell changed in turn.
+     *
+     * @param since The trail position from which changes are new.
+     * @return False if a unit cannot hold every digit. The caller should undo to its checkpoint.
+     */
+    boolean propagate(int since)
+    {
+        boolean result = true;
+
+        dirty = 0;
+        scanned = since;
+        markChanged(-1);
+
+        while (dirty != 0 && result) {
+            int unit = Integer.numberOfTrailingZeros(dirty);
+            dirty &= dirty - 1;
+
+            result = filter(unit);
+            // A unit is left consistent by its own removals.
+            markChanged(unit);
+        }
+
+        return result;
+    }
+
+    /** Mark the units of every cell changed since the last scan of the trail, except one. */
+    private void markChanged(int except)
+    {
+        for (; scanned < store.checkpoint(); scanned++) {
+            for (int unit : ConstraintGraph.CELL_UNITS[store.changedCell(scanned)]) {
+                if (unit != except) {
+                    dirty |= 1 << unit;
+                }
+            }
+        }
+    }
+
+    /**
+     * Repair the matching of a unit, then remove every candidate of its cells which lies on no
+     * alternating cycle.
+     *
+     * @return False if the unit has no complete matching.
+     */
+    private boolean filter(int unit)
+    {
+        boolean result = true;
+
+        int[] cells = ConstraintGraph.UNITS[unit];
+        int base = unit * Bitboard.SIZE;
+
+        for (int position = 0; position < Bitboard.SIZE; position++) {
+            int digit = digitOf[base + position];
+            if (digit >= 0 && (store.domains[cells[position]] & (1 << digit)) == 0) {
+                digitOf[base + position] = -1;
+                positionOf[base + digit] = -1;
+            }
+        }
+        for (int position = 0; position < Bitboard.SIZE && result; position++) {
+            if (digitOf[base + position] < 0) {
+                visited = 0;
+                result = augment(cells, base, position);
+            }
+        }
+
+        // Only cells with more than one candidate have edges out, so only they can be on a cycle.
+        int open = 0;
+        for (int position = 0; position < Bitboard.SIZE && result; position++) {
+            int domain = store.domains[cells[position]];
+            reach[position] = 0;
+
+            if ((domain & (domain - 1)) != 0) {
+                open |= 1 << position;
+
+                int others = domain & ~(1 << digitOf[base + position]);
+                for (; others != 0; others &= others - 1) {
+                    int digit = Integer.numberOfTrailingZeros(others);
+                    reach[position] |= 1 << positionOf[base + digit];
+                }
+            }
+        }
+
+        if (result && open != 0) {
+            // Warshall's transitive closure, with each row of the reachability matrix a mask.
+            for (int via = open; via != 0; via &= via - 1) {
+                int middle = Integer.numberOfTrailingZeros(via);
+                for (int rest = open; rest != 0; rest &= rest - 1) {
+                    int position = Integer.numberOfTrailingZeros(rest);
+                    if ((reach[position] & (1 << middle)) != 0) {
+                        reach[position] |= reach[middle];
+                    }
+                }
+            }
+
+            // An edge to another cell is on a cycle only if that cell can reach back.
+            for (int rest = open; rest != 0; rest &= rest - 1) {
+                int position = Integer.numberOfTrailingZeros(rest);
+                int domain = store.domains[cells[position]];
+                int others = domain & ~(1 << digitOf[base + position]);
+                int removed = 0;
+                for (; others != 0; others &= others - 1) {
+                    int digit = Integer.numberOfTrailingZeros(others);
+                    if ((reach[positionOf[base + digit]] & (1 << position)) == 0) {
+                        removed |= 1 << digit;
+                    }
+                }
+                if (removed != 0) {
+                    store.restrict(cells[position], ~removed);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Match a cell of the unit to one of its candidates, moving the cells already matched along
+     * an augmenting path if need be.
+     *
+     * @return False if there is no augmenting path from the cell.
+     */
+    private boolean augment(int[] cells, int base, int position)
+    {
+        boolean result = false;
+
+        int candidates = store.domains[cells[position]] & ~visited;
+        visited |= candidates;
+
+        for (; candidates != 0 && !result; candidates &= candidates - 1) {
+            int digit = Integer.numberOfTrailingZeros(candidates);
+            int other = positionOf[base + digit];
+
+            if (other < 0 || augment(cells, base, other)) {
+                digitOf[base + position] = digit;
+                positionOf[base + digit] = position;
+                result = true;
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,416 @@
+package me.jbuckley.mysudokusolver.solver;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import solver.dvo.OrderByDomain;
+import solver.strategies.BasicBacktracking;
+import solver.strategies.ForwardChecking;
+import solver.strategies.GAC;
+import solver.strategies.InitialGAC;
+import solver.strategies.InitialSAC;
+import solver.strategies.SAC;
+
+/**
+ * Headless solving of puzzle files, one puzzle of 81 characters per line. Digits are givens, and
+ * any other character is an empty cell. The input is read through a memory mapped file in fixed
+ * size windows, and each block of puzzles is solved across the worker threads before the
+ * solutions are written out in input order. After every block the byte offset reached in the
+ * input and the length of the output are reported. Both can be passed back in to resume an
+ * interrupted run: the output is first cut back to that length, dropping anything written for a
+ * block that was not finished.
+ *
+ * Usage: BatchSolver input output [strategy] [threads] [offset output-length]
+ */
+public class BatchSolver
+{
+    private static final int WINDOW_BYTES = 64 * 1024 * 1024;
+    private static final int BLOCK_PUZZLES = 16 * 1024;
+    private static final String NO_SOLUTION = "none";
+
+    private final String strategyName;
+    private final int threads;
+    private final ExecutorService executor;
+    private final ThreadLocal<GridStrategy> strategies;
+
+    private long puzzles;
+    private long solved;
+    private long assignments;
+    private long outputLength;
+
+    /**
+     * Create a new BatchSolver.
+     *
+     * @param strategyName The name of the strategy each worker solves with.
+     * @param threads The number of worker threads.
+     */
+    public BatchSolver(final String strategyName, int threads)
+    {
+        this.strategyName = strategyName;
+        this.threads = threads;
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.strategies = new ThreadLocal<GridStrategy>()
+        {
+            @Override
+            protected GridStrategy initialValue()
+            {
+                return createStrategy(strategyName);
+            }
+        };
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if (args.length < 2 || args.length == 5) {
+            System.err.println("Usage: BatchSolver input output [strategy] [threads]"
+                    + " [offset output-length]");
+            System.exit(1);
+        }
+
+        String strategy = args.length > 2 ? args[2] : "bitboard";
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+        long offset = args.length > 4 ? Long.parseLong(args[4]) : 0;
+        long outputLength = args.length > 5 ? Long.parseLong(args[5]) : 0;
+
+        BatchSolver batchSolver = new BatchSolver(strategy, threads);
+        try {
+            batchSolver.solveFile(args[0], args[1], offset, outputLength);
+        } finally {
+            batchSolver.shutdown();
+        }
+    }
+
+    /**
+     * Create a strategy by name.
+     *
+     * @param name One of bitboard, sized, logic, dlx, backtracking, fc, fc-dvo, gac,
+     * initial-gac, sac, initial-sac, fc-trail, gac-trail, sac-trail, fc-wdeg, gac-wdeg,
+     * sac-wdeg, fc-impact, gac-impact, sac-impact, bitboard-luby, bitboard-geometric,
+     * fc-wdeg-luby, gac-wdeg-luby, alldiff-trail, alldiff-wdeg, nogood and sat. sized is the
+     * SizedBitboardSolver with 9x9 grids, logic is the LogicSolver falling back to bitboard, the
+     * trail, wdeg and impact names are the TrailSolver with each consistency and ordering, and the
+     * luby and geometric names are those strategies in a RestartSolver.
+     * @return The strategy.
+     */
+    public static GridStrategy createStrategy(String name)
+    {
+        GridStrategy result;
+
+        switch (name) {
+            case "bitboard":
+                result = new BitboardSolver();
+                break;
+            case "sized":
+                result = new SizedBitboardSolver(3);
+                break;
+            case "logic":
+                result = new LogicSolver(new BitboardSolver());
+                break;
+            case "dlx":
+                result = new DancingLinksSolver();
+                break;
+            case "backtracking":
+                result = new CspGridStrategy(new BasicBacktracking());
+                break;
+            case "fc":
+                result = new CspGridStrategy(new ForwardChecking());
+                break;
+            case "fc-dvo":
+                result = new CspGridStrategy(new ForwardChecking(new OrderByDomain()));
+                break;
+            case "gac":
+                result = new CspGridStrategy(new GAC());
+                break;
+            case "initial-gac":
+                result = new CspGridStrategy(new InitialGAC());
+                break;
+            case "sac":
+                result = new CspGridStrategy(new SAC());
+                break;
+            case "initial-sac":
+                result = new CspGridStrategy(new InitialSAC());
+                break;
+            case "fc-trail":
+                result = new TrailSolver(TrailSolver.Consistency.FORWARD_CHECKING);
+                break;
+            case "gac-trail":
+                result = new TrailSolver(TrailSolver.Consistency.GAC);
+                break;
+            case "sac-trail":
+                result = new TrailSolver(TrailSolver.Consistency.SAC);
+                break;
+            case "fc-wdeg":
+                result = new TrailSolver(TrailSolver.Consistency.FORWARD_CHECKING,
+                        TrailSolver.Ordering.DOM_WDEG);
+                break;
+            case "gac-wdeg":
+                result = new TrailSolver(TrailSolver.Consistency.GAC,
+                        TrailSolver.Ordering.DOM_WDEG);
+                break;
+            case "sac-wdeg":
+                result = new TrailSolver(TrailSolver.Consistency.SAC,
+                        TrailSolver.Ordering.DOM_WDEG);
+                break;
+            case "fc-impact":
+                result = new TrailSolver(TrailSolver.Consistency.FORWARD_CHECKING,
+                        TrailSolver.Ordering.IMPACT);
+                break;
+            case "gac-impact":
+                result = new TrailSolver(TrailSolver.Consistency.GAC,
+                        TrailSolver.Ordering.IMPACT);
+                break;
+            case "sac-impact":
+                result = new TrailSolver(TrailSolver.Consistency.SAC,
+                        TrailSolver.Ordering.IMPACT);
+                break;
+            case "bitboard-luby":
+                result = new RestartSolver(new BitboardSolver(), RestartSolver.Policy.LUBY);
+                break;
+            case "bitboard-geometric":
+                result = new RestartSolver(new BitboardSolver(), RestartSolver.Policy.GEOMETRIC);
+                break;
+            case "fc-wdeg-luby":
+                result = new RestartSolver(new TrailSolver(TrailSolver.Consistency.FORWARD_CHECKING,
+                        TrailSolver.Ordering.DOM_WDEG), RestartSolver.Policy.LUBY);
+                break;
+            case "gac-wdeg-luby":
+                result = new RestartSolver(new TrailSolver(TrailSolver.Consistency.GAC,
+                        TrailSolver.Ordering.DOM_WDEG), RestartSolver.Policy.LUBY);
+                break;
+            case "alldiff-trail":
+                result = new TrailSolver(TrailSolver.Consistency.ALL_DIFFERENT);
+                break;
+            case "alldiff-wdeg":
+                result = new TrailSolver(TrailSolver.Consistency.ALL_DIFFERENT,
+                        TrailSolver.Ordering.DOM_WDEG);
+                break;
+            case "nogood":
+                result = new NogoodSolver();
+                break;
+            case "sat":
+                result = new SatSolver();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown strategy: " + name);
+        }
+
+        return result;
+    }
+
+    /**
+     * Solve every puzzle in the input file from the given offset, writing one line per puzzle to
+     * the output file: the solution, or "none" if the puzzle cannot be solved.
+     *
+     * @param input The puzzle file.
+     * @param output The solution file. When resuming from a non-zero offset, it is cut back to
+     * the resume length and then appended to.
+     * @param offset The byte offset of the input to start from.
+     * @param resumeLength The output length reported along with the offset.
+     */
+    public void solveFile(String input, String output, long offset, long resumeLength)
+            throws IOException, InterruptedException
+    {
+        long start = System.nanoTime();
+
+        FileOutputStream stream = new FileOutputStream(output, offset > 0);
+        if (offset > 0) {
+            // A block cut short by a crash may have been partly written, so drop it.
+            if (stream.getChannel().size() < resumeLength) {
+                stream.close();
+                throw new IOException("Output is shorter than the resume length " + resumeLength);
+            }
+            stream.getChannel().truncate(resumeLength);
+            outputLength = resumeLength;
+        }
+
+        RandomAccessFile file = new RandomAccessFile(input, "r");
+        Writer writer = new BufferedWriter(new OutputStreamWriter(stream,
+                Charset.forName("US-ASCII")));
+
+        try {
+            PuzzleReader reader = new PuzzleReader(file.getChannel(), offset);
+            char[][] block = new char[BLOCK_PUZZLES][];
+            char[][] solutions = new char[BLOCK_PUZZLES][];
+
+            int total = reader.read(block);
+            while (total > 0) {
+                solveBlock(block, solutions, total);
+
+                for (int i = 0; i < total; i++) {
+                    if (solutions[i] != null) {
+                        writer.write(solutions[i]);
+                        outputLength += solutions[i].length + 1;
+                        solved++;
+                    } else {
+                        writer.write(NO_SOLUTION);
+                        outputLength += NO_SOLUTION.length() + 1;
+                    }
+                    writer.write('\n');
+                }
+                writer.flush();
+
+                puzzles += total;
+                System.err.println("Solved " + puzzles + " puzzles, resume offset "
+                        + reader.getPosition() + " output length " + outputLength);
+
+                total = reader.read(block);
+            }
+        } finally {
+            writer.close();
+            file.close();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(strategyName + ": " + solved + "/" + puzzles + " solved in "
+                + String.format("%.2f", seconds) + "s, "
+                + String.format("%.0f", puzzles / seconds) + " puzzles/second, "
+                + assignments + " assignments");
+    }
+
+    /** Stop the worker threads. */
+    public void shutdown()
+    {
+        executor.shutdown();
+    }
+
+    /**
+     * Split the block into a contiguous range per worker and solve each range in parallel,
+     * adding the assignments each worker made to the total.
+     *
+     * @param block The puzzles.
+     * @param solutions Filled with the solution of each puzzle, or null if it has none.
+     * @param total The number of puzzles in the block.
+     */
+    private void solveBlock(final char[][] block, final char[][] solutions, int total)
+            throws InterruptedException
+    {
+        List<Future<Long>> futures = new ArrayList<>(threads);
+        int rangeSize = (total + threads - 1) / threads;
+
+        for (int first = 0; first < total; first += rangeSize) {
+            final int from = first;
+            final int to = Math.min(total, first + rangeSize);
+
+            futures.add(executor.submit(new Callable<Long>()
+            {
+                @Override
+                public Long call() throws Exception
+                {
+                    GridStrategy strategy = strategies.get();
+                    long rangeAssignments = 0;
+                    for (int i = from; i < to; i++) {
+                        solutions[i] = strategy.solve(block[i]);
+                        rangeAssignments += strategy.getAssignments();
+                    }
+                    return rangeAssignments;
+                }
+            }));
+        }
+
+        try {
+            for (Future<Long> future : futures) {
+                assignments += future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to solve block", e.getCause());
+        }
+    }
+
+    /** Reads puzzle lines from a file channel, mapping a window of the file at a time. */
+    private static class PuzzleReader
+    {
+        private final FileChannel channel;
+        private final long size;
+
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long position;
+
+        private PuzzleReader(FileChannel channel, long offset) throws IOException
+        {
+            this.channel = channel;
+            this.size = channel.size();
+
+            position = Math.min(offset, size);
+            map(position);
+
+            // Resuming part way through a line, so skip to the start of the next.
+            if (position > 0 && position < size && byteAt(position - 1) != '\n') {
+                while (position < size && byteAt(position) != '\n') {
+                    position++;
+                }
+                position++;
+            }
+        }
+
+        /** @return The byte offset after the last line read. */
+        private long getPosition()
+        {
+            return position;
+        }
+
+        /**
+         * Read the next puzzles, skipping lines which are too short to hold one.
+         *
+         * @param block Filled with the cell values of each puzzle read.
+         * @return The number of puzzles read. 0 at the end of the file.
+         */
+        private int read(char[][] block) throws IOException
+        {
+            int result = 0;
+
+            while (result < block.length && position < size) {
+                long end = position;
+                while (end < size && byteAt(end) != '\n') {
+                    end++;
+                }
+
+                if (end - position >= Bitboard.CELLS) {
+                    char[] cells = new char[Bitboard.CELLS];
+                    for (int i = 0; i < Bitboard.CELLS; i++) {
+                        byte b = byteAt(position + i);
+                        cells[i] = b >= '1' && b <= '9' ? (char) b : ' ';
+                    }
+                    block[result++] = cells;
+                }
+
+                position = Math.min(end + 1, size);
+            }
+
+            return result;
+        }
+
+        /** @return The byte at the file offset, moving the mapped window if required. */
+        private byte byteAt(long offset) throws IOException
+        {
+            if (offset < windowStart || offset >= windowStart + window.limit()) {
+                map(offset);
+            }
+
+            return window.get((int) (offset - windowStart));
+        }
+
+        /** Map the window of the file starting at the offset. */
+        private void map(long offset) throws IOException
+        {
+            windowStart = offset;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                    Math.min(WINDOW_BYTES, size - offset));
+        }
+    }
+}
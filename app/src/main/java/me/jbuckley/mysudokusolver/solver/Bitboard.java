@@ -0,0 +1,359 @@
+package me.jbuckley.mysudokusolver.solver;
+
+import java.util.Random;
+
+/**
+ * Sudoku search state held entirely in primitive arrays. Each cell domain is a 9-bit candidate
+ * mask, with bit (v - 1) set while digit v is still possible. Every change made to the state is
+ * pushed onto a trail, so a search can roll back to any earlier checkpoint without copying.
+ */
+final class Bitboard
+{
+    static final int SIZE = 9;
+    static final int CELLS = 81;
+    static final int ALL = 0x1FF;
+
+    private static final int[] ROW = ConstraintGraph.ROW;
+    private static final int[] COL = ConstraintGraph.COL;
+    private static final int[] BOX = ConstraintGraph.BOX;
+    private static final int[][] PEERS = ConstraintGraph.PEERS;
+
+    // Set on a trail entry when the cell was assigned, rather than only having its domain reduced.
+    private static final int ASSIGNED = 0x8000;
+
+    final short[] domains = new short[CELLS];
+    final byte[] values = new byte[CELLS];
+    final short[] rowUsed = new short[SIZE];
+    final short[] colUsed = new short[SIZE];
+    final short[] boxUsed = new short[SIZE];
+
+    // A cell's domain can shrink at most 8 times, plus one entry when it is assigned.
+    private final int[] trail = new int[CELLS * SIZE];
+    private final int[] singles = new int[CELLS];
+
+    private int trailSize;
+    private int assignedCells;
+    private long assignments;
+
+    /**
+     * Reset the board and place the given cell values, propagating each one.
+     *
+     * @param cells The starting values of the Sudoku grid. ' ' is an empty cell.
+     * @return False if the given values contradict each other.
+     */
+    boolean load(char[] cells)
+    {
+        boolean result = true;
+
+        for (int cell = 0; cell < CELLS; cell++) {
+            domains[cell] = ALL;
+            values[cell] = 0;
+        }
+        for (int i = 0; i < SIZE; i++) {
+            rowUsed[i] = 0;
+            colUsed[i] = 0;
+            boxUsed[i] = 0;
+        }
+        trailSize = 0;
+        assignedCells = 0;
+
+        for (int cell = 0; cell < CELLS && result; cell++) {
+            char c = cells[cell];
+            if (c >= '1' && c <= '9' && values[cell] != c - '0') {
+                result = assign(cell, c - '1');
+            }
+        }
+
+        assignments = 0;
+
+        return result;
+    }
+
+    /**
+     * Copy the current state of another board, starting with an empty trail.
+     *
+     * @param other The board to copy.
+     */
+    void copyFrom(Bitboard other)
+    {
+        System.arraycopy(other.domains, 0, domains, 0, CELLS);
+        System.arraycopy(other.values, 0, values, 0, CELLS);
+        System.arraycopy(other.rowUsed, 0, rowUsed, 0, SIZE);
+        System.arraycopy(other.colUsed, 0, colUsed, 0, SIZE);
+        System.arraycopy(other.boxUsed, 0, boxUsed, 0, SIZE);
+
+        trailSize = 0;
+        assignedCells = other.assignedCells;
+        assignments = 0;
+    }
+
+    /**
+     * Copy the state another board had at a checkpoint, starting with an empty trail. The other
+     * board is left as it is.
+     *
+     * @param other The board to copy.
+     * @param checkpoint A trail position of the other board returned by checkpoint.
+     */
+    void copyFrom(Bitboard other, int checkpoint)
+    {
+        copyFrom(other);
+
+        for (int position = other.trailSize - 1; position >= checkpoint; position--) {
+            revert(other.trail[position]);
+        }
+    }
+
+    /**
+     * Assign a digit to a cell, removing it from the domains of the cell's peers and assigning
+     * any peer left with a single candidate.
+     *
+     * @param cell The cell index.
+     * @param digit The zero based digit.
+     * @return False if propagation wiped out a domain. The caller should undo to its checkpoint.
+     */
+    boolean assign(int cell, int digit)
+    {
+        int bit = 1 << digit;
+        boolean result = (domains[cell] & bit) != 0;
+
+        if (result && domains[cell] != bit) {
+            trail[trailSize++] = (cell << 16) | domains[cell];
+            domains[cell] = (short) bit;
+        }
+
+        int head = 0;
+        int tail = 0;
+        singles[tail++] = cell;
+
+        while (head < tail && result) {
+            int c = singles[head++];
+            int single = domains[c];
+
+            trail[trailSize++] = (c << 16) | ASSIGNED | single;
+            values[c] = (byte) (Integer.numberOfTrailingZeros(single) + 1);
+            rowUsed[ROW[c]] |= single;
+            colUsed[COL[c]] |= single;
+            boxUsed[BOX[c]] |= single;
+            assignedCells++;
+            assignments++;
+
+            int[] peers = PEERS[c];
+            for (int i = 0; i < peers.length && result; i++) {
+                int peer = peers[i];
+                int domain = domains[peer];
+
+                if ((domain & single) != 0) {
+                    // Removing the last candidate wipes out the peer's domain.
+                    result = domain != single;
+
+                    if (result) {
+                        trail[trailSize++] = (peer << 16) | domain;
+                        domain ^= single;
+                        domains[peer] = (short) domain;
+
+                        if ((domain & (domain - 1)) == 0) {
+                            singles[tail++] = peer;
+                        }
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove a candidate from a cell, assigning the cell if a single candidate is left.
+     *
+     * @param cell The cell index.
+     * @param digit The zero based digit.
+     * @return False if no candidate is left or propagation wiped out a domain. The caller should
+     * undo to its checkpoint.
+     */
+    boolean exclude(int cell, int digit)
+    {
+        int bit = 1 << digit;
+        int domain = domains[cell];
+        boolean result = domain != bit;
+
+        if (result && (domain & bit) != 0) {
+            trail[trailSize++] = (cell << 16) | domain;
+            domain ^= bit;
+            domains[cell] = (short) domain;
+
+            if ((domain & (domain - 1)) == 0) {
+                result = assign(cell, Integer.numberOfTrailingZeros(domain));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Change the value of a single cell outside of any search. The used digits of the cell's row,
+     * column and box are recomputed, then the domains of the cell and its peers. Nothing is
+     * trailed or propagated further, so the board only holds the placed values and the domains
+     * they directly restrict, and a value can be removed again as easily as it was placed.
+     *
+     * @param cell The cell index.
+     * @param value The digit 1-9, or 0 to clear the cell.
+     */
+    void place(int cell, int value)
+    {
+        if (values[cell] != 0) {
+            assignedCells--;
+        }
+        if (value != 0) {
+            assignedCells++;
+        }
+        values[cell] = (byte) value;
+
+        int[] units = ConstraintGraph.CELL_UNITS[cell];
+        rowUsed[ROW[cell]] = (short) usedDigits(units[0]);
+        colUsed[COL[cell]] = (short) usedDigits(units[1]);
+        boxUsed[BOX[cell]] = (short) usedDigits(units[2]);
+
+        refreshDomain(cell);
+        for (int peer : PEERS[cell]) {
+            refreshDomain(peer);
+        }
+    }
+
+    /** @return The candidate bits of the values placed in the unit. */
+    private int usedDigits(int unit)
+    {
+        int result = 0;
+
+        for (int cell : ConstraintGraph.UNITS[unit]) {
+            result |= digitBit(cell);
+        }
+
+        return result;
+    }
+
+    /** @return The candidate bit of the cell's value, or 0 if it is empty. */
+    private int digitBit(int cell)
+    {
+        return values[cell] == 0 ? 0 : 1 << (values[cell] - 1);
+    }
+
+    /** Set the domain of the cell from its value, or from the digits used by its units. */
+    private void refreshDomain(int cell)
+    {
+        if (values[cell] != 0) {
+            domains[cell] = (short) digitBit(cell);
+        } else {
+            domains[cell] = (short) (ALL & ~(rowUsed[ROW[cell]] | colUsed[COL[cell]]
+                    | boxUsed[BOX[cell]]));
+        }
+    }
+
+    /** @return The current trail position, to later pass to undo. */
+    int checkpoint()
+    {
+        return trailSize;
+    }
+
+    /**
+     * Undo every change made since the checkpoint was taken.
+     *
+     * @param checkpoint A trail position returned by checkpoint.
+     */
+    void undo(int checkpoint)
+    {
+        while (trailSize > checkpoint) {
+            revert(trail[--trailSize]);
+        }
+    }
+
+    /** Reverse the change recorded by a trail entry. */
+    private void revert(int entry)
+    {
+        int cell = entry >>> 16;
+
+        if ((entry & ASSIGNED) != 0) {
+            int bit = ~(1 << (values[cell] - 1));
+            rowUsed[ROW[cell]] &= bit;
+            colUsed[COL[cell]] &= bit;
+            boxUsed[BOX[cell]] &= bit;
+            values[cell] = 0;
+            assignedCells--;
+        }
+
+        domains[cell] = (short) (entry & ALL);
+    }
+
+    /**
+     * Find the unassigned cell with the fewest remaining candidates.
+     *
+     * @return The cell index, or -1 if every cell is assigned.
+     */
+    int selectCell()
+    {
+        int result = -1;
+        int smallest = SIZE + 1;
+
+        if (assignedCells < CELLS) {
+            for (int cell = 0; cell < CELLS && smallest > 2; cell++) {
+                if (values[cell] == 0) {
+                    int size = Integer.bitCount(domains[cell]);
+                    if (size < smallest) {
+                        smallest = size;
+                        result = cell;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Find an unassigned cell with the fewest remaining candidates, choosing between ties at
+     * random.
+     *
+     * @param random The source of the choice.
+     * @return The cell index, or -1 if every cell is assigned.
+     */
+    int selectCell(Random random)
+    {
+        int result = -1;
+        int smallest = SIZE + 1;
+        int ties = 0;
+
+        if (assignedCells < CELLS) {
+            for (int cell = 0; cell < CELLS; cell++) {
+                if (values[cell] == 0) {
+                    int size = Integer.bitCount(domains[cell]);
+                    if (size < smallest) {
+                        smallest = size;
+                        result = cell;
+                        ties = 1;
+                    } else if (size == smallest && random.nextInt(++ties) == 0) {
+                        result = cell;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /** @return The number of assignments made since the board was loaded. */
+    long getAssignments()
+    {
+        return assignments;
+    }
+
+    /** @return The assigned cell values as characters. ' ' is an unassigned cell. */
+    char[] toCells()
+    {
+        char[] result = new char[CELLS];
+
+        for (int cell = 0; cell < CELLS; cell++) {
+            result[cell] = values[cell] == 0 ? ' ' : (char) ('0' + values[cell]);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,122 @@
+package me.jbuckley.mysudokusolver.solver;
+
+import java.util.Random;
+
+/**
+ * Forward checking search over bitmask cell domains. All search state lives in a Bitboard
+ * created with the solver, so no objects are allocated while searching.
+ */
+public class BitboardSolver implements RandomizedStrategy
+{
+    private final Bitboard board = new Bitboard();
+
+    private Random random;
+
+    private SolveRecorder recorder = SolveRecorder.NONE;
+    private SolveBudget budget = new SolveBudget();
+
+    private boolean timedOut;
+    private long assignments;
+    private long timeTaken;
+
+    @Override
+    public char[] solve(char[] cells)
+    {
+        char[] result = null;
+
+        long start = System.nanoTime();
+        recorder.solveStarted();
+        timedOut = false;
+
+        if (board.load(cells) && search(0)) {
+            result = board.toCells();
+        }
+
+        recorder.solveFinished();
+        assignments = board.getAssignments();
+        timeTaken = (System.nanoTime() - start) / 1000000;
+
+        return result;
+    }
+
+    /** Nothing is learned from a solve, so a restart is a new solve. */
+    @Override
+    public char[] restart(char[] cells)
+    {
+        return solve(cells);
+    }
+
+    /**
+     * Assign the most constrained cell each of its candidates in turn, backtracking on failure.
+     *
+     * @param depth The number of decisions above this one.
+     * @return True if the board has been completed.
+     */
+    private boolean search(int depth)
+    {
+        boolean result = false;
+
+        int cell = random == null ? board.selectCell() : board.selectCell(random);
+        if (cell < 0) {
+            result = true;
+        } else {
+            int candidates = board.domains[cell];
+            while (candidates != 0 && !result && !timedOut) {
+                int bit = candidates & -candidates;
+                candidates ^= bit;
+
+                int checkpoint = board.checkpoint();
+                recorder.nodeVisited(depth);
+                timedOut = budget.isExhausted(board.getAssignments());
+
+                recorder.propagationStarted();
+                boolean consistent = board.assign(cell, Integer.numberOfTrailingZeros(bit));
+                recorder.propagationFinished(!consistent);
+
+                result = consistent && !timedOut && search(depth + 1);
+                if (!result) {
+                    board.undo(checkpoint);
+                    recorder.backtracked();
+                }
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public void setRandom(Random random)
+    {
+        this.random = random;
+    }
+
+    @Override
+    public long getAssignments()
+    {
+        return assignments;
+    }
+
+    @Override
+    public long getTimeTaken()
+    {
+        return timeTaken;
+    }
+
+    @Override
+    public void setRecorder(SolveRecorder recorder)
+    {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void setBudget(SolveBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+}
@@ -0,0 +1,370 @@
+package me.jbuckley.mysudokusolver.solver;
+
+/**
+ * The canonical form of a puzzle under the Sudoku symmetries: transposition, band and stack
+ * permutations, row and column permutations within them, and digit relabelling. Every puzzle
+ * isomorphic to another has the same canonical cells, and the transform found here maps
+ * solutions between the puzzle and its canonical form.
+ *
+ * The canonical cells are the lexicographically smallest transform, with empty cells before
+ * digits and digits relabelled in order of first appearance. Only transforms which order the
+ * bands, stacks, rows and columns by their number of givens are considered. That ordering is
+ * itself unchanged by the symmetries, so the form stays canonical while most of the 3,359,232
+ * transforms are never visited. The remaining column arrangements are each searched row by row,
+ * abandoning rows that would already compare greater than the best form found so far.
+ *
+ * Few givens leave the line orderings with many ties, so many more transforms are searched. No
+ * puzzle with fewer than 17 givens has a unique solution, so such puzzles get no form at all, and
+ * the search otherwise stops when the budget of the solve runs out.
+ */
+public final class CanonicalForm
+{
+    private static final int SIZE = Bitboard.SIZE;
+    private static final int CELLS = Bitboard.CELLS;
+
+    /** The fewest givens of a puzzle with a unique solution. */
+    public static final int MIN_GIVENS = 17;
+
+    // Rows tried between the checks of the budget.
+    private static final int CHECK_INTERVAL = 1024;
+
+    private static final int[][] PERMUTATIONS = {
+            {0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+
+    private final char[] cells = new char[CELLS];
+    private final int[] rowMap = new int[SIZE];
+    private final int[] colMap = new int[SIZE];
+    private final int[] labels = new int[SIZE + 1];
+    private boolean transposed;
+
+    // Working state of the search for the smallest form.
+    private final int[] source = new int[CELLS];
+    private final int[] rowGivens = new int[SIZE];
+    private final int[] colGivens = new int[SIZE];
+    private final int[] bandGivens = new int[3];
+    private final int[] stackGivens = new int[3];
+    private final int[] arranged = new int[CELLS];
+    private final int[] current = new int[CELLS];
+    private final int[] best = new int[CELLS];
+    private final int[] currentRows = new int[SIZE];
+    private final int[] currentCols = new int[SIZE];
+    private final int[][] depthLabels = new int[SIZE + 1][SIZE + 1];
+    private final int[] depthNextLabel = new int[SIZE + 1];
+    private boolean currentTransposed;
+    private boolean found;
+
+    private final SolveBudget budget;
+    private int rowsTried;
+    private boolean stopped;
+
+    private CanonicalForm(SolveBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    /**
+     * Find the canonical form of a puzzle, unless it has too few givens to have a unique solution
+     * or the budget runs out first.
+     *
+     * @param puzzle The cell values of the puzzle. ' ' is an empty cell.
+     * @param budget The budget of the solve, whose time limit and cancellation are checked.
+     * @return The canonical form, along with the transform from the puzzle, or null if the puzzle
+     * has fewer than MIN_GIVENS givens or the budget ran out.
+     */
+    public static CanonicalForm of(char[] puzzle, SolveBudget budget)
+    {
+        CanonicalForm result = null;
+
+        int givens = 0;
+        for (char c : puzzle) {
+            if (c >= '1' && c <= '9') {
+                givens++;
+            }
+        }
+
+        if (givens >= MIN_GIVENS) {
+            result = new CanonicalForm(budget);
+            result.compute(puzzle);
+
+            if (result.stopped) {
+                result = null;
+            }
+        }
+
+        return result;
+    }
+
+    /** @return The canonical cell values, as a key shared by all isomorphic puzzles. */
+    public String getKey()
+    {
+        return new String(cells);
+    }
+
+    /**
+     * Transform a solution of the puzzle into a solution of the canonical form.
+     *
+     * @param solution The solved cell values of the puzzle.
+     * @return The solved cell values of the canonical form.
+     */
+    public char[] toCanonical(char[] solution)
+    {
+        char[] result = new char[CELLS];
+
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                int digit = solution[sourceCell(i, j)] - '0';
+                result[i * SIZE + j] = (char) ('0' + labels[digit]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Transform a solution of the canonical form back into a solution of the puzzle.
+     *
+     * @param canonicalSolution The solved cell values of the canonical form.
+     * @return The solved cell values of the puzzle.
+     */
+    public char[] fromCanonical(char[] canonicalSolution)
+    {
+        char[] result = new char[CELLS];
+
+        int[] digits = new int[SIZE + 1];
+        for (int digit = 1; digit <= SIZE; digit++) {
+            digits[labels[digit]] = digit;
+        }
+
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                int label = canonicalSolution[i * SIZE + j] - '0';
+                result[sourceCell(i, j)] = (char) ('0' + digits[label]);
+            }
+        }
+
+        return result;
+    }
+
+    /** @return The puzzle cell which is moved to row i and column j of the canonical form. */
+    private int sourceCell(int i, int j)
+    {
+        int row = rowMap[i];
+        int col = colMap[j];
+
+        return transposed ? col * SIZE + row : row * SIZE + col;
+    }
+
+    /** Search every transform for the smallest form, keeping it and its transform. */
+    private void compute(char[] puzzle)
+    {
+        for (int t = 0; t < 2; t++) {
+            currentTransposed = t == 1;
+
+            countGivens(puzzle);
+
+            for (int[] stacks : PERMUTATIONS) {
+                if (isOrdered(stackGivens, stacks, 0)) {
+                    for (int[] first : PERMUTATIONS) {
+                        if (isOrdered(colGivens, first, stacks[0] * 3)) {
+                            for (int[] second : PERMUTATIONS) {
+                                if (isOrdered(colGivens, second, stacks[1] * 3)) {
+                                    for (int[] third : PERMUTATIONS) {
+                                        if (isOrdered(colGivens, third, stacks[2] * 3)) {
+                                            arrangeColumns(stacks, first, second, third);
+                                            searchRows(0, !found, 0);
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int cell = 0; cell < CELLS; cell++) {
+            cells[cell] = best[cell] == 0 ? ' ' : (char) ('0' + best[cell]);
+        }
+
+        // Digits missing from the puzzle take the remaining labels, so solutions map fully.
+        int nextLabel = 0;
+        for (int digit = 1; digit <= SIZE; digit++) {
+            nextLabel = Math.max(nextLabel, labels[digit]);
+        }
+        for (int digit = 1; digit <= SIZE; digit++) {
+            if (labels[digit] == 0) {
+                labels[digit] = ++nextLabel;
+            }
+        }
+    }
+
+    /** Fill the source cells from the puzzle, transposed if required, and count their givens. */
+    private void countGivens(char[] puzzle)
+    {
+        for (int i = 0; i < SIZE; i++) {
+            rowGivens[i] = 0;
+            colGivens[i] = 0;
+        }
+        for (int i = 0; i < 3; i++) {
+            bandGivens[i] = 0;
+            stackGivens[i] = 0;
+        }
+
+        for (int cell = 0; cell < CELLS; cell++) {
+            int row = ConstraintGraph.ROW[cell];
+            int col = ConstraintGraph.COL[cell];
+            char c = puzzle[currentTransposed ? col * SIZE + row : cell];
+
+            source[cell] = c >= '1' && c <= '9' ? c - '0' : 0;
+
+            if (source[cell] != 0) {
+                rowGivens[row]++;
+                colGivens[col]++;
+                bandGivens[row / 3]++;
+                stackGivens[col / 3]++;
+            }
+        }
+    }
+
+    /**
+     * Check a permutation of three lines keeps their number of givens in non-decreasing order.
+     *
+     * @param givens The number of givens in each line.
+     * @param permutation The permutation.
+     * @param offset The index of the first of the three lines.
+     */
+    private static boolean isOrdered(int[] givens, int[] permutation, int offset)
+    {
+        return givens[offset + permutation[0]] <= givens[offset + permutation[1]]
+                && givens[offset + permutation[1]] <= givens[offset + permutation[2]];
+    }
+
+    /** @return True if no row that could come next has fewer givens than the row. */
+    private boolean isFewestGivens(int row, int usedRows, boolean newBand)
+    {
+        boolean result = true;
+
+        int band = row / 3;
+        for (int other = 0; other < SIZE && result; other++) {
+            if ((usedRows & (1 << other)) == 0) {
+                if (other / 3 == band) {
+                    result = rowGivens[other] >= rowGivens[row];
+                } else if (newBand && (usedRows & (7 << ((other / 3) * 3))) == 0) {
+                    result = bandGivens[other / 3] >= bandGivens[band];
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /** Rearrange the source columns by the given stack and within-stack permutations. */
+    private void arrangeColumns(int[] stacks, int[] first, int[] second, int[] third)
+    {
+        int[][] withinStacks = {first, second, third};
+
+        for (int j = 0; j < SIZE; j++) {
+            currentCols[j] = stacks[j / 3] * 3 + withinStacks[j / 3][j % 3];
+        }
+
+        for (int row = 0; row < SIZE; row++) {
+            for (int j = 0; j < SIZE; j++) {
+                arranged[row * SIZE + j] = source[row * SIZE + currentCols[j]];
+            }
+        }
+    }
+
+    /**
+     * Try each row allowed at this depth, recursing while the form could still be the smallest.
+     *
+     * @param depth The row of the form being filled.
+     * @param less True if the rows filled so far are already smaller than the best form.
+     * @param usedRows Bit mask of the arranged rows used so far.
+     * @return True if a new best form was recorded below this depth.
+     */
+    private boolean searchRows(int depth, boolean less, int usedRows)
+    {
+        boolean result = false;
+
+        if (++rowsTried % CHECK_INTERVAL == 0) {
+            stopped = budget.isExhausted(0);
+        }
+
+        if (depth == SIZE) {
+            if (less) {
+                record();
+                result = true;
+            }
+        } else {
+            int firstRow = depth % 3 == 0 ? 0 : (currentRows[depth - 1] / 3) * 3;
+            int lastRow = depth % 3 == 0 ? SIZE : firstRow + 3;
+
+            for (int row = firstRow; row < lastRow && !stopped; row++) {
+                // A new band may only start with a band none of whose rows are used.
+                boolean allowed = (usedRows & (1 << row)) == 0
+                        && (depth % 3 != 0 || (usedRows & (7 << ((row / 3) * 3))) == 0)
+                        && isFewestGivens(row, usedRows, depth % 3 == 0);
+
+                if (allowed) {
+                    int compare = fillRow(depth, row, less);
+
+                    if (compare <= 0) {
+                        currentRows[depth] = row;
+                        if (searchRows(depth + 1, compare < 0, usedRows | (1 << row))) {
+                            // The best form now shares this prefix, so later rows compare equal.
+                            result = true;
+                            less = false;
+                        }
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Relabel an arranged row into the current form, comparing it against the best form.
+     *
+     * @return Negative, zero or positive as the form is smaller, equal or greater than the best.
+     */
+    private int fillRow(int depth, int row, boolean less)
+    {
+        int result = less ? -1 : 0;
+
+        int[] map = depthLabels[depth + 1];
+        System.arraycopy(depthLabels[depth], 0, map, 0, SIZE + 1);
+        int nextLabel = depthNextLabel[depth];
+
+        for (int j = 0; j < SIZE && result <= 0; j++) {
+            int value = arranged[row * SIZE + j];
+            if (value != 0) {
+                if (map[value] == 0) {
+                    map[value] = ++nextLabel;
+                }
+                value = map[value];
+            }
+
+            int cell = depth * SIZE + j;
+            current[cell] = value;
+            if (result == 0 && value != best[cell]) {
+                result = value < best[cell] ? -1 : 1;
+            }
+        }
+
+        depthNextLabel[depth + 1] = nextLabel;
+
+        return result;
+    }
+
+    /** Keep the current form and its transform as the best found so far. */
+    private void record()
+    {
+        System.arraycopy(current, 0, best, 0, CELLS);
+        System.arraycopy(currentRows, 0, rowMap, 0, SIZE);
+        System.arraycopy(currentCols, 0, colMap, 0, SIZE);
+        System.arraycopy(depthLabels[SIZE], 0, labels, 0, SIZE + 1);
+        transposed = currentTransposed;
+        found = true;
+    }
+}
@@ -0,0 +1,552 @@
+package me.jbuckley.mysudokusolver.solver;
+
+import java.util.Arrays;
+
+/**
+ * A small conflict driven clause learning SAT solver, held entirely in primitive arrays. Each
+ * clause is watched by its first two literals, and each conflict is analysed back to its first
+ * unique implication point, learning a clause and backjumping to where that clause asserts its
+ * literal. Decisions follow VSIDS activity with saved phases, and the search restarts after a
+ * number of conflicts following the Luby sequence.
+ *
+ * Variable v has the literals 2v, true when v is, and 2v + 1, true when v is false. The clauses
+ * added before the first solve are kept as the problem, and the clauses learned during a solve
+ * are dropped by the next reset, as they may depend on its assumptions.
+ */
+final class CdclEngine
+{
+    private static final int RESTART_CONFLICTS = 64;
+    private static final double ACTIVITY_DECAY = 0.95;
+    private static final double ACTIVITY_LIMIT = 1e100;
+
+    private static final byte TRUE = 1;
+    private static final byte FALSE = -1;
+
+    private final int variables;
+
+    private int[] clauseLiterals = new int[1024];
+    private int[] clauseStarts = new int[256];
+    private int[] clauseSizes = new int[256];
+    private int literalsUsed;
+    private int clauses;
+    private int problemLiterals = -1;
+    private int problemClauses = -1;
+
+    private final int[][] watches;
+    private final int[] watchCounts;
+
+    private final byte[] values;
+    private final int[] levels;
+    private final int[] reasons;
+    private final boolean[] phases;
+    private final int[] trail;
+    private final int[] trailLimits;
+    private int trailSize;
+    private int propagated;
+    private int decisionLevel;
+
+    private final double[] activities;
+    private final int[] heap;
+    private final int[] heapIndices;
+    private int heapSize;
+    private double increment;
+
+    private final boolean[] seen;
+    private final int[] learned;
+
+    private boolean consistent;
+    private boolean timedOut;
+    private long decisions;
+    private long conflicts;
+
+    /**
+     * Create a new CdclEngine.
+     *
+     * @param variables The number of variables.
+     */
+    CdclEngine(int variables)
+    {
+        this.variables = variables;
+
+        watches = new int[2 * variables][];
+        watchCounts = new int[2 * variables];
+        for (int literal = 0; literal < watches.length; literal++) {
+            watches[literal] = new int[4];
+        }
+
+        values = new byte[2 * variables];
+        levels = new int[variables];
+        reasons = new int[variables];
+        phases = new boolean[variables];
+        trail = new int[variables];
+        trailLimits = new int[variables + 1];
+
+        activities = new double[variables];
+        heap = new int[variables];
+        heapIndices = new int[variables];
+
+        seen = new boolean[variables];
+        learned = new int[variables];
+
+        reset();
+    }
+
+    /** @return The literal true when the variable is. */
+    static int positive(int variable)
+    {
+        return 2 * variable;
+    }
+
+    /** @return The literal true when the variable is false. */
+    static int negative(int variable)
+    {
+        return 2 * variable + 1;
+    }
+
+    /**
+     * Add a clause of the problem. Every clause must be added before the first solve.
+     *
+     * @param literals The literals, at least two, of which at least one must be true.
+     */
+    void addClause(int... literals)
+    {
+        int clause = newClause(literals, literals.length);
+        watch(literals[0], clause);
+        watch(literals[1], clause);
+    }
+
+    /**
+     * Drop every learned clause, assignment and activity, leaving only the problem's clauses.
+     */
+    void reset()
+    {
+        if (problemClauses >= 0) {
+            literalsUsed = problemLiterals;
+            clauses = problemClauses;
+
+            Arrays.fill(watchCounts, 0);
+            for (int clause = 0; clause < clauses; clause++) {
+                watch(clauseLiterals[clauseStarts[clause]], clause);
+                watch(clauseLiterals[clauseStarts[clause] + 1], clause);
+            }
+        }
+
+        Arrays.fill(values, (byte) 0);
+        Arrays.fill(phases, false);
+        Arrays.fill(activities, 0);
+        trailSize = 0;
+        propagated = 0;
+        decisionLevel = 0;
+        increment = 1;
+
+        heapSize = variables;
+        for (int variable = 0; variable < variables; variable++) {
+            heap[variable] = variable;
+            heapIndices[variable] = variable;
+        }
+
+        consistent = true;
+        decisions = 0;
+        conflicts = 0;
+    }
+
+    /**
+     * Make a literal true for the next solve, until the next reset.
+     *
+     * @param literal The literal.
+     */
+    void assume(int literal)
+    {
+        if (values[literal] == FALSE) {
+            consistent = false;
+        } else if (values[literal] == 0) {
+            enqueue(literal, -1);
+        }
+    }
+
+    /**
+     * Search for an assignment satisfying every clause and assumption.
+     *
+     * @param budget Checked before every decision. The search stops once it is exhausted.
+     * @return True if the clauses are satisfiable. False if they are not, or the search timed out.
+     */
+    boolean solve(SolveBudget budget)
+    {
+        boolean result = false;
+        boolean finished = !consistent;
+        timedOut = false;
+
+        if (problemClauses < 0) {
+            problemClauses = clauses;
+            problemLiterals = literalsUsed;
+        }
+
+        int restarts = 0;
+        long restartAt = RESTART_CONFLICTS * luby(restarts);
+
+        while (!finished) {
+            int conflict = propagate();
+
+            if (conflict >= 0) {
+                conflicts++;
+                if (decisionLevel == 0) {
+                    finished = true;
+                } else {
+                    learn(conflict);
+                    increment /= ACTIVITY_DECAY;
+
+                    if (--restartAt == 0) {
+                        cancelUntil(0);
+                        restarts++;
+                        restartAt = RESTART_CONFLICTS * luby(restarts);
+                    }
+                }
+            } else if (trailSize == variables) {
+                result = true;
+                finished = true;
+            } else if (budget.isExhausted(decisions)) {
+                timedOut = true;
+                finished = true;
+            } else {
+                decide();
+            }
+        }
+
+        return result;
+    }
+
+    /** @return True if the variable is true in the satisfying assignment found. */
+    boolean isTrue(int variable)
+    {
+        return values[positive(variable)] == TRUE;
+    }
+
+    /** @return True if the last solve stopped because its budget was exhausted. */
+    boolean isTimedOut()
+    {
+        return timedOut;
+    }
+
+    /** @return The number of decisions made since the last reset. */
+    long getDecisions()
+    {
+        return decisions;
+    }
+
+    /** @return The number of conflicts found since the last reset. */
+    long getConflicts()
+    {
+        return conflicts;
+    }
+
+    /** Store a clause, returning its index. */
+    private int newClause(int[] literals, int size)
+    {
+        if (literalsUsed + size > clauseLiterals.length) {
+            clauseLiterals = Arrays.copyOf(clauseLiterals,
+                    Math.max(clauseLiterals.length * 2, literalsUsed + size));
+        }
+        if (clauses == clauseStarts.length) {
+            clauseStarts = Arrays.copyOf(clauseStarts, clauses * 2);
+            clauseSizes = Arrays.copyOf(clauseSizes, clauses * 2);
+        }
+
+        System.arraycopy(literals, 0, clauseLiterals, literalsUsed, size);
+        clauseStarts[clauses] = literalsUsed;
+        clauseSizes[clauses] = size;
+        literalsUsed += size;
+
+        return clauses++;
+    }
+
+    /** Add the clause to the watch list of the literal. */
+    private void watch(int literal, int clause)
+    {
+        int count = watchCounts[literal];
+        if (count == watches[literal].length) {
+            watches[literal] = Arrays.copyOf(watches[literal], count * 2);
+        }
+        watches[literal][count] = clause;
+        watchCounts[literal] = count + 1;
+    }
+
+    /** Make the literal true at the current decision level. */
+    private void enqueue(int literal, int reason)
+    {
+        int variable = literal >> 1;
+
+        values[literal] = TRUE;
+        values[literal ^ 1] = FALSE;
+        levels[variable] = decisionLevel;
+        reasons[variable] = reason;
+        trail[trailSize++] = literal;
+    }
+
+    /**
+     * Visit the clauses watching each literal made false. A clause moves its watch to another
+     * literal which is not false if it can, and otherwise asserts its other watched literal.
+     *
+     * @return The index of a clause with every literal false, or -1 if there is none.
+     */
+    private int propagate()
+    {
+        int result = -1;
+
+        while (propagated < trailSize && result < 0) {
+            int falseLiteral = trail[propagated++] ^ 1;
+            int[] list = watches[falseLiteral];
+            int count = watchCounts[falseLiteral];
+            int kept = 0;
+            int i = 0;
+
+            while (i < count) {
+                int clause = list[i++];
+                int start = clauseStarts[clause];
+                int end = start + clauseSizes[clause];
+
+                // Keep the false literal second, so the first is the one that may be asserted.
+                if (clauseLiterals[start] == falseLiteral) {
+                    clauseLiterals[start] = clauseLiterals[start + 1];
+                    clauseLiterals[start + 1] = falseLiteral;
+                }
+                int first = clauseLiterals[start];
+
+                int replacement = -1;
+                if (values[first] != TRUE) {
+                    for (int k = start + 2; k < end && replacement < 0; k++) {
+                        if (values[clauseLiterals[k]] != FALSE) {
+                            replacement = k;
+                        }
+                    }
+                }
+
+                if (replacement >= 0) {
+                    clauseLiterals[start + 1] = clauseLiterals[replacement];
+                    clauseLiterals[replacement] = falseLiteral;
+                    watch(clauseLiterals[start + 1], clause);
+                } else {
+                    list[kept++] = clause;
+
+                    if (values[first] == FALSE) {
+                        result = clause;
+                        while (i < count) {
+                            list[kept++] = list[i++];
+                        }
+                    } else if (values[first] == 0) {
+                        enqueue(first, clause);
+                    }
+                }
+            }
+
+            watchCounts[falseLiteral] = kept;
+        }
+
+        return result;
+    }
+
+    /**
+     * Resolve the conflict back to the first unique implication point of the current level,
+     * then learn the resulting clause, backjump to the second highest level within it, and
+     * assert its first literal there.
+     */
+    private void learn(int conflict)
+    {
+        int size = 1;
+        int paths = 0;
+        int literal = -1;
+        int index = trailSize - 1;
+        int clause = conflict;
+
+        do {
+            int start = clauseStarts[clause];
+            int end = start + clauseSizes[clause];
+
+            // The first literal of a reason clause is the one it implied.
+            for (int k = literal < 0 ? start : start + 1; k < end; k++) {
+                int other = clauseLiterals[k];
+                int variable = other >> 1;
+
+                if (!seen[variable] && levels[variable] > 0) {
+                    seen[variable] = true;
+                    bump(variable);
+
+                    if (levels[variable] == decisionLevel) {
+                        paths++;
+                    } else {
+                        learned[size++] = other;
+                    }
+                }
+            }
+
+            while (!seen[trail[index] >> 1]) {
+                index--;
+            }
+            literal = trail[index--];
+            clause = reasons[literal >> 1];
+            seen[literal >> 1] = false;
+            paths--;
+        } while (paths > 0);
+
+        learned[0] = literal ^ 1;
+
+        int backjumpLevel = 0;
+        int highest = 0;
+        for (int k = 1; k < size; k++) {
+            int variable = learned[k] >> 1;
+            seen[variable] = false;
+
+            if (levels[variable] > backjumpLevel) {
+                backjumpLevel = levels[variable];
+                highest = k;
+            }
+        }
+
+        cancelUntil(backjumpLevel);
+
+        if (size == 1) {
+            enqueue(learned[0], -1);
+        } else {
+            int swap = learned[1];
+            learned[1] = learned[highest];
+            learned[highest] = swap;
+
+            int learnedClause = newClause(learned, size);
+            watch(learned[0], learnedClause);
+            watch(learned[1], learnedClause);
+            enqueue(learned[0], learnedClause);
+        }
+    }
+
+    /** Undo every assignment above the decision level, saving the phase of each variable. */
+    private void cancelUntil(int level)
+    {
+        if (decisionLevel > level) {
+            for (int i = trailSize - 1; i >= trailLimits[level]; i--) {
+                int literal = trail[i];
+                int variable = literal >> 1;
+
+                phases[variable] = (literal & 1) == 0;
+                values[literal] = 0;
+                values[literal ^ 1] = 0;
+                if (heapIndices[variable] < 0) {
+                    heapInsert(variable);
+                }
+            }
+
+            trailSize = trailLimits[level];
+            propagated = trailSize;
+            decisionLevel = level;
+        }
+    }
+
+    /** Assign the unassigned variable of highest activity its saved phase, at a new level. */
+    private void decide()
+    {
+        int variable = heapRemoveMax();
+        while (values[positive(variable)] != 0) {
+            variable = heapRemoveMax();
+        }
+
+        decisions++;
+        trailLimits[decisionLevel++] = trailSize;
+        enqueue(phases[variable] ? positive(variable) : negative(variable), -1);
+    }
+
+    /** Increase the activity of a variable involved in a conflict. */
+    private void bump(int variable)
+    {
+        activities[variable] += increment;
+
+        if (activities[variable] > ACTIVITY_LIMIT) {
+            for (int other = 0; other < variables; other++) {
+                activities[other] /= ACTIVITY_LIMIT;
+            }
+            increment /= ACTIVITY_LIMIT;
+        }
+
+        if (heapIndices[variable] >= 0) {
+            siftUp(heapIndices[variable]);
+        }
+    }
+
+    private void heapInsert(int variable)
+    {
+        heap[heapSize] = variable;
+        heapIndices[variable] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private int heapRemoveMax()
+    {
+        int result = heap[0];
+        heapIndices[result] = -1;
+
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndices[heap[0]] = 0;
+            siftDown(0);
+        }
+
+        return result;
+    }
+
+    private void siftUp(int index)
+    {
+        int variable = heap[index];
+
+        while (index > 0 && activities[heap[(index - 1) / 2]] < activities[variable]) {
+            int parent = (index - 1) / 2;
+            heap[index] = heap[parent];
+            heapIndices[heap[index]] = index;
+            index = parent;
+        }
+
+        heap[index] = variable;
+        heapIndices[variable] = index;
+    }
+
+    private void siftDown(int index)
+    {
+        int variable = heap[index];
+        boolean placed = false;
+
+        while (!placed) {
+            int child = 2 * index + 1;
+            if (child + 1 < heapSize && activities[heap[child + 1]] > activities[heap[child]]) {
+                child++;
+            }
+
+            if (child < heapSize && activities[heap[child]] > activities[variable]) {
+                heap[index] = heap[child];
+                heapIndices[heap[index]] = index;
+                index = child;
+            } else {
+                placed = true;
+            }
+        }
+
+        heap[index] = variable;
+        heapIndices[variable] = index;
+    }
+
+    /** @return The ith term of the Luby sequence 1, 1, 2, 1, 1, 2, 4, 1, ... from 0. */
+    static long luby(int i)
+    {
+        int size = 1;
+        int sequence = 0;
+        while (size < i + 1) {
+            sequence++;
+            size = 2 * size + 1;
+        }
+
+        int position = i;
+        while (size - 1 != position) {
+            size = (size - 1) / 2;
+            sequence--;
+            position %= size;
+        }
+
+        return 1L << sequence;
+    }
+}
@@ -0,0 +1,66 @@
+package me.jbuckley.mysudokusolver.solver;
+
+/**
+ * The constraint graph of a 9x9 grid as static tables of primitives, shared by every strategy in
+ * this package. Two cells are peers, joined by a not-equal constraint, when they share a row,
+ * column or box, so iterating the arcs of a cell is a loop over its 20 peers. The 27 units are
+ * indexed rows first, then columns, then boxes, and each cell belongs to one unit of each.
+ */
+final class ConstraintGraph
+{
+    static final int UNIT_COUNT = 3 * Bitboard.SIZE;
+    static final int PEER_COUNT = 20;
+
+    // The index of the first unit of each kind.
+    static final int ROWS = 0;
+    static final int COLUMNS = Bitboard.SIZE;
+    static final int BOXES = 2 * Bitboard.SIZE;
+
+    static final int[] ROW = new int[Bitboard.CELLS];
+    static final int[] COL = new int[Bitboard.CELLS];
+    static final int[] BOX = new int[Bitboard.CELLS];
+
+    static final int[][] UNITS = new int[UNIT_COUNT][Bitboard.SIZE];
+    static final int[][] CELL_UNITS = new int[Bitboard.CELLS][3];
+    static final int[][] PEERS = new int[Bitboard.CELLS][PEER_COUNT];
+
+    static {
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            int row = cell / Bitboard.SIZE;
+            int col = cell % Bitboard.SIZE;
+            int box = (row / 3) * 3 + col / 3;
+
+            ROW[cell] = row;
+            COL[cell] = col;
+            BOX[cell] = box;
+
+            UNITS[ROWS + row][col] = cell;
+            UNITS[COLUMNS + col][row] = cell;
+            UNITS[BOXES + box][(row % 3) * 3 + col % 3] = cell;
+
+            CELL_UNITS[cell][0] = ROWS + row;
+            CELL_UNITS[cell][1] = COLUMNS + col;
+            CELL_UNITS[cell][2] = BOXES + box;
+        }
+
+        // Every cell of the cell's three units except itself, with the overlaps counted once.
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            boolean[] added = new boolean[Bitboard.CELLS];
+            added[cell] = true;
+
+            int total = 0;
+            for (int unit : CELL_UNITS[cell]) {
+                for (int other : UNITS[unit]) {
+                    if (!added[other]) {
+                        added[other] = true;
+                        PEERS[cell][total++] = other;
+                    }
+                }
+            }
+        }
+    }
+
+    private ConstraintGraph()
+    {
+    }
+}
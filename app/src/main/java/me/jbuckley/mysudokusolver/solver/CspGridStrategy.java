@@ -0,0 +1,85 @@
+package me.jbuckley.mysudokusolver.solver;
+
+import solver.csp.Solution;
+import solver.strategies.SolveStrategy;
+import sudoku.SudokuGrid;
+
+/**
+ * Adapts one of the CSP based solver strategies to a GridStrategy, solving through a SudokuGrid.
+ */
+public class CspGridStrategy implements GridStrategy
+{
+    private final SolveStrategy strategy;
+
+    private SolveRecorder recorder = SolveRecorder.NONE;
+    private SolveBudget budget = new SolveBudget();
+
+    private boolean timedOut;
+
+    /**
+     * Create a new CspGridStrategy.
+     *
+     * @param strategy The CSP strategy used to solve the SudokuGrid.
+     */
+    public CspGridStrategy(SolveStrategy strategy)
+    {
+        this.strategy = strategy;
+    }
+
+    @Override
+    public char[] solve(char[] cells)
+    {
+        char[] result = null;
+
+        recorder.solveStarted();
+        timedOut = budget.isExhausted(0);
+
+        if (!timedOut) {
+            SudokuGrid sudokuGrid = new SudokuGrid(cells, strategy);
+            Solution solution = sudokuGrid.solve();
+
+            if (solution != null) {
+                result = sudokuGrid.getCellValues();
+            }
+        }
+
+        recorder.solveFinished();
+
+        return result;
+    }
+
+    @Override
+    public long getAssignments()
+    {
+        return (long) strategy.getAssignments();
+    }
+
+    @Override
+    public long getTimeTaken()
+    {
+        return (long) strategy.getTimeTaken();
+    }
+
+    /** The CSP strategies report no search events, so only the start and end are recorded. */
+    @Override
+    public void setRecorder(SolveRecorder recorder)
+    {
+        this.recorder = recorder;
+    }
+
+    /**
+     * The CSP strategies cannot be interrupted, so the budget is only checked before the solve
+     * starts, and a solve already running always finishes.
+     */
+    @Override
+    public void setBudget(SolveBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+}
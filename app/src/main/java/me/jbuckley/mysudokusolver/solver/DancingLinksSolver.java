@@ -0,0 +1,371 @@
+package me.jbuckley.mysudokusolver.solver;
+
+/**
+ * Knuth's Algorithm X using dancing links. The puzzle is modelled as an exact cover problem with
+ * 324 columns (cell, row-digit, column-digit and box-digit constraints) and 729 rows, one for each
+ * possible cell assignment. All links are held in a node pool of int arrays built once, and the
+ * search can be told to stop after a given number of solutions, making it usable for uniqueness
+ * checks as well as solving.
+ */
+public class DancingLinksSolver implements GridStrategy
+{
+    private static final int COLUMNS = 4 * Bitboard.CELLS;
+    private static final int ROWS = Bitboard.CELLS * Bitboard.SIZE;
+    private static final int ROOT = 0;
+
+    // Row nodes follow the root and column headers, four to a row.
+    private static final int FIRST_ROW_NODE = COLUMNS + 1;
+    private static final int NODES = FIRST_ROW_NODE + ROWS * 4;
+
+    private final int[] left = new int[NODES];
+    private final int[] right = new int[NODES];
+    private final int[] up = new int[NODES];
+    private final int[] down = new int[NODES];
+    private final int[] column = new int[NODES];
+    private final int[] size = new int[COLUMNS + 1];
+
+    private final int[] partial = new int[Bitboard.CELLS];
+    private final int[] givens = new int[Bitboard.CELLS];
+    private final char[] firstSolution = new char[Bitboard.CELLS];
+
+    private final int solutionLimit;
+
+    private SolveRecorder recorder = SolveRecorder.NONE;
+    private SolveBudget budget = new SolveBudget();
+
+    private boolean timedOut;
+    private int solutionCount;
+    private long assignments;
+    private long timeTaken;
+
+    /** Create a new DancingLinksSolver which stops at the first solution found. */
+    public DancingLinksSolver()
+    {
+        this(1);
+    }
+
+    /**
+     * Create a new DancingLinksSolver.
+     *
+     * @param solutionLimit The number of solutions to find before the search stops.
+     */
+    public DancingLinksSolver(int solutionLimit)
+    {
+        this.solutionLimit = solutionLimit;
+
+        buildMatrix();
+    }
+
+    /**
+     * Count the solutions of a puzzle, stopping once the limit is reached.
+     *
+     * @param cells The starting values of the Sudoku grid. ' ' is an empty cell.
+     * @param limit The number of solutions at which to stop counting. 2 checks for uniqueness.
+     * @return The number of solutions, at most limit.
+     */
+    public static int countSolutions(char[] cells, int limit)
+    {
+        DancingLinksSolver solver = new DancingLinksSolver(limit);
+        solver.solve(cells);
+
+        return solver.getSolutionCount();
+    }
+
+    @Override
+    public char[] solve(char[] cells)
+    {
+        char[] result = null;
+
+        long start = System.nanoTime();
+        recorder.solveStarted();
+
+        solutionCount = 0;
+        assignments = 0;
+        timedOut = false;
+
+        int totalGivens = coverGivens(cells);
+        if (totalGivens >= 0) {
+            search(0);
+            uncoverGivens(totalGivens);
+        }
+
+        recorder.solveFinished();
+
+        if (solutionCount > 0 && !timedOut) {
+            result = firstSolution.clone();
+        }
+
+        timeTaken = (System.nanoTime() - start) / 1000000;
+
+        return result;
+    }
+
+    /**
+     * @return The number of solutions found by the last solve, up to the solution limit. Only a
+     * lower bound if the solve timed out.
+     */
+    public int getSolutionCount()
+    {
+        return solutionCount;
+    }
+
+    @Override
+    public long getAssignments()
+    {
+        return assignments;
+    }
+
+    @Override
+    public long getTimeTaken()
+    {
+        return timeTaken;
+    }
+
+    @Override
+    public void setRecorder(SolveRecorder recorder)
+    {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void setBudget(SolveBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+
+    /** Link the column headers and every row of the exact cover matrix. */
+    private void buildMatrix()
+    {
+        for (int c = 0; c <= COLUMNS; c++) {
+            left[c] = c == 0 ? COLUMNS : c - 1;
+            right[c] = c == COLUMNS ? 0 : c + 1;
+            up[c] = c;
+            down[c] = c;
+            column[c] = c;
+        }
+
+        for (int row = 0; row < ROWS; row++) {
+            int cell = row / Bitboard.SIZE;
+            int digit = row % Bitboard.SIZE;
+            int first = FIRST_ROW_NODE + row * 4;
+
+            int[] columns = {
+                    1 + cell,
+                    1 + Bitboard.CELLS + ConstraintGraph.ROW[cell] * Bitboard.SIZE + digit,
+                    1 + 2 * Bitboard.CELLS + ConstraintGraph.COL[cell] * Bitboard.SIZE + digit,
+                    1 + 3 * Bitboard.CELLS + ConstraintGraph.BOX[cell] * Bitboard.SIZE + digit};
+
+            for (int i = 0; i < 4; i++) {
+                int node = first + i;
+                int c = columns[i];
+
+                left[node] = i == 0 ? first + 3 : node - 1;
+                right[node] = i == 3 ? first : node + 1;
+
+                up[node] = up[c];
+                down[node] = c;
+                down[up[c]] = node;
+                up[c] = node;
+
+                column[node] = c;
+                size[c]++;
+            }
+        }
+    }
+
+    /**
+     * Remove the rows of each given value from the matrix.
+     *
+     * @param cells The starting values of the Sudoku grid.
+     * @return The number of givens covered, or -1 if the givens contradict each other.
+     */
+    private int coverGivens(char[] cells)
+    {
+        int result = 0;
+
+        for (int cell = 0; cell < Bitboard.CELLS && result >= 0; cell++) {
+            char c = cells[cell];
+            if (c >= '1' && c <= '9') {
+                int node = FIRST_ROW_NODE + (cell * Bitboard.SIZE + c - '1') * 4;
+
+                // A given whose constraint is already satisfied clashes with an earlier given.
+                if (isCovered(node)) {
+                    uncoverGivens(result);
+                    result = -1;
+                } else {
+                    givens[result++] = node;
+                    firstSolution[cell] = c;
+                    coverRow(node);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Restore the rows of the covered givens, in reverse order.
+     *
+     * @param totalGivens The number of givens covered.
+     */
+    private void uncoverGivens(int totalGivens)
+    {
+        for (int i = totalGivens - 1; i >= 0; i--) {
+            uncoverRow(givens[i]);
+        }
+    }
+
+    /** @return True if any column of the row's nodes has already been covered. */
+    private boolean isCovered(int node)
+    {
+        boolean result = false;
+
+        int j = node;
+        do {
+            int c = column[j];
+            result = right[left[c]] != c;
+            j = right[j];
+        } while (j != node && !result);
+
+        return result;
+    }
+
+    /**
+     * Find exact covers of the remaining columns, recording the first solution.
+     *
+     * @param depth The number of rows chosen so far by the search.
+     * @return True once the solution limit has been reached or the budget has run out.
+     */
+    private boolean search(int depth)
+    {
+        boolean result = false;
+
+        if (right[ROOT] == ROOT) {
+            solutionCount++;
+            if (solutionCount == 1) {
+                recordSolution(depth);
+            }
+            result = solutionCount >= solutionLimit;
+        } else {
+            int c = chooseColumn();
+
+            cover(c);
+            for (int r = down[c]; r != c && !result; r = down[r]) {
+                partial[depth] = r;
+                assignments++;
+                recorder.nodeVisited(depth);
+                timedOut = budget.isExhausted(assignments);
+
+                recorder.propagationStarted();
+                for (int j = right[r]; j != r; j = right[j]) {
+                    cover(column[j]);
+                }
+                // Only look for emptied columns when the result is being recorded.
+                recorder.propagationFinished(recorder != SolveRecorder.NONE && hasEmptyColumn());
+
+                result = timedOut || search(depth + 1);
+
+                for (int j = left[r]; j != r; j = left[j]) {
+                    uncover(column[j]);
+                }
+                if (!result) {
+                    recorder.backtracked();
+                }
+            }
+            uncover(c);
+        }
+
+        return result;
+    }
+
+    /** @return The uncovered column with the fewest rows. */
+    private int chooseColumn()
+    {
+        int result = right[ROOT];
+
+        for (int c = right[result]; c != ROOT && size[result] > 1; c = right[c]) {
+            if (size[c] < size[result]) {
+                result = c;
+            }
+        }
+
+        return result;
+    }
+
+    /** @return True if any uncovered column has no rows left to satisfy it. */
+    private boolean hasEmptyColumn()
+    {
+        boolean result = false;
+
+        for (int c = right[ROOT]; c != ROOT && !result; c = right[c]) {
+            result = size[c] == 0;
+        }
+
+        return result;
+    }
+
+    /** Store the cell values chosen by the search alongside the givens. */
+    private void recordSolution(int depth)
+    {
+        for (int i = 0; i < depth; i++) {
+            int row = (partial[i] - FIRST_ROW_NODE) / 4;
+            firstSolution[row / Bitboard.SIZE] = (char) ('1' + row % Bitboard.SIZE);
+        }
+    }
+
+    /** Cover every column of the row containing node. */
+    private void coverRow(int node)
+    {
+        int j = node;
+        do {
+            cover(column[j]);
+            j = right[j];
+        } while (j != node);
+    }
+
+    /** Uncover every column of the row containing node, in reverse order. */
+    private void uncoverRow(int node)
+    {
+        int j = left[node];
+        do {
+            uncover(column[j]);
+            j = left[j];
+        } while (j != left[node]);
+    }
+
+    /** Remove the column and every row that satisfies it. */
+    private void cover(int c)
+    {
+        right[left[c]] = right[c];
+        left[right[c]] = left[c];
+
+        for (int i = down[c]; i != c; i = down[i]) {
+            for (int j = right[i]; j != i; j = right[j]) {
+                up[down[j]] = up[j];
+                down[up[j]] = down[j];
+                size[column[j]]--;
+            }
+        }
+    }
+
+    /** Restore the column and its rows, exactly reversing cover. */
+    private void uncover(int c)
+    {
+        for (int i = up[c]; i != c; i = up[i]) {
+            for (int j = left[i]; j != i; j = left[j]) {
+                size[column[j]]++;
+                up[down[j]] = j;
+                down[up[j]] = j;
+            }
+        }
+
+        right[left[c]] = c;
+        left[right[c]] = c;
+    }
+}
@@ -0,0 +1,87 @@
+package me.jbuckley.mysudokusolver.solver;
+
+/**
+ * A single step found by the LogicEngine: either a value placed in a cell, or candidates removed
+ * from some cells. Either way the step names its technique and the cells whose candidates
+ * justify it.
+ */
+public final class Deduction
+{
+    private final Technique technique;
+    private final int cell;
+    private final int value;
+    private final int[] cells;
+    private final short[] removals;
+
+    /**
+     * Create a Deduction placing a value.
+     *
+     * @param technique The technique which found the value.
+     * @param cell The cell index.
+     * @param value The value, 1-9.
+     * @param cells The cells justifying the step.
+     */
+    Deduction(Technique technique, int cell, int value, int[] cells)
+    {
+        this.technique = technique;
+        this.cell = cell;
+        this.value = value;
+        this.cells = cells;
+        this.removals = null;
+    }
+
+    /**
+     * Create a Deduction removing candidates.
+     *
+     * @param technique The technique which found the removals.
+     * @param cells The cells justifying the step.
+     * @param removals The candidate mask removed from each cell, indexed by cell.
+     */
+    Deduction(Technique technique, int[] cells, short[] removals)
+    {
+        this.technique = technique;
+        this.cell = -1;
+        this.value = 0;
+        this.cells = cells;
+        this.removals = removals;
+    }
+
+    /** @return The technique used. */
+    public Technique getTechnique()
+    {
+        return technique;
+    }
+
+    /** @return True if the step places a value, rather than only removing candidates. */
+    public boolean isPlacement()
+    {
+        return cell >= 0;
+    }
+
+    /** @return The cell the value is placed in, or -1 if the step only removes candidates. */
+    public int getCell()
+    {
+        return cell;
+    }
+
+    /** @return The value placed, 1-9, or 0 if the step only removes candidates. */
+    public int getValue()
+    {
+        return value;
+    }
+
+    /** @return The cells whose candidates justify the step. */
+    public int[] getCells()
+    {
+        return cells;
+    }
+
+    /**
+     * @param target The cell index.
+     * @return The 9-bit mask of candidates the step removes from the cell.
+     */
+    public int getRemovals(int target)
+    {
+        return removals == null ? 0 : removals[target];
+    }
+}
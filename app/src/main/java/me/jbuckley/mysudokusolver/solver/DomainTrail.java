@@ -0,0 +1,170 @@
+package me.jbuckley.mysudokusolver.solver;
+
+import java.util.Random;
+
+/**
+ * The cell domains of the Sudoku CSP as 9-bit candidate masks, with every change pushed onto a
+ * primitive trail. Unlike a Bitboard nothing is propagated here, so the same store serves each
+ * level of consistency the TrailSolver can maintain.
+ */
+final class DomainTrail
+{
+    // Set on a trail entry when the cell was assigned, rather than only having its domain reduced.
+    private static final int ASSIGNED = 0x8000;
+
+    final int[] domains = new int[Bitboard.CELLS];
+    final byte[] values = new byte[Bitboard.CELLS];
+
+    // A cell's domain can shrink at most 8 times, plus one entry when it is assigned.
+    private final int[] trail = new int[Bitboard.CELLS * (Bitboard.SIZE + 1)];
+
+    private int trailSize;
+    private int assignedCells;
+
+    /** Give every cell the full domain, with nothing assigned. */
+    void reset()
+    {
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            domains[cell] = Bitboard.ALL;
+            values[cell] = 0;
+        }
+        trailSize = 0;
+        assignedCells = 0;
+    }
+
+    /**
+     * Remove every candidate of a cell outside the mask.
+     *
+     * @param cell The cell index.
+     * @param mask The candidates which may remain.
+     * @return The cell's new domain, which is 0 if it has been wiped out.
+     */
+    int restrict(int cell, int mask)
+    {
+        int domain = domains[cell];
+        int result = domain & mask;
+
+        if (result != domain) {
+            trail[trailSize++] = (cell << 16) | domain;
+            domains[cell] = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Mark a cell as assigned. Its domain should already have been restricted to the digit.
+     *
+     * @param cell The cell index.
+     * @param digit The zero based digit.
+     */
+    void setValue(int cell, int digit)
+    {
+        trail[trailSize++] = (cell << 16) | ASSIGNED | domains[cell];
+        values[cell] = (byte) (digit + 1);
+        assignedCells++;
+    }
+
+    /**
+     * @param position A trail position below the current one.
+     * @return The cell changed by the trail entry at the position.
+     */
+    int changedCell(int position)
+    {
+        return trail[position] >>> 16;
+    }
+
+    /** @return The current trail position, to later pass to undo. */
+    int checkpoint()
+    {
+        return trailSize;
+    }
+
+    /**
+     * Undo every change made since the checkpoint was taken.
+     *
+     * @param checkpoint A trail position returned by checkpoint.
+     */
+    void undo(int checkpoint)
+    {
+        while (trailSize > checkpoint) {
+            int entry = trail[--trailSize];
+            int cell = entry >>> 16;
+
+            if ((entry & ASSIGNED) != 0) {
+                values[cell] = 0;
+                assignedCells--;
+            }
+
+            domains[cell] = entry & Bitboard.ALL;
+        }
+    }
+
+    /**
+     * Find the unassigned cell with the fewest remaining candidates.
+     *
+     * @return The cell index, or -1 if every cell is assigned.
+     */
+    int selectCell()
+    {
+        int result = -1;
+        int smallest = Bitboard.SIZE + 1;
+
+        if (assignedCells < Bitboard.CELLS) {
+            for (int cell = 0; cell < Bitboard.CELLS && smallest > 1; cell++) {
+                if (values[cell] == 0) {
+                    int size = Integer.bitCount(domains[cell]);
+                    if (size < smallest) {
+                        smallest = size;
+                        result = cell;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Find an unassigned cell with the fewest remaining candidates, choosing between ties at
+     * random. A cell with a single candidate is taken straight away.
+     *
+     * @param random The source of the choice.
+     * @return The cell index, or -1 if every cell is assigned.
+     */
+    int selectCell(Random random)
+    {
+        int result = -1;
+        int smallest = Bitboard.SIZE + 1;
+        int ties = 0;
+
+        if (assignedCells < Bitboard.CELLS) {
+            for (int cell = 0; cell < Bitboard.CELLS && smallest > 1; cell++) {
+                if (values[cell] == 0) {
+                    int size = Integer.bitCount(domains[cell]);
+                    if (size < smallest) {
+                        smallest = size;
+                        result = cell;
+                        ties = 1;
+                    } else if (size == smallest && random.nextInt(++ties) == 0) {
+                        result = cell;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /** @return The assigned cell values as characters. ' ' is an unassigned cell. */
+    char[] toCells()
+    {
+        char[] result = new char[Bitboard.CELLS];
+
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            result[cell] = values[cell] == 0 ? ' ' : (char) ('0' + values[cell]);
+        }
+
+        return result;
+    }
+}
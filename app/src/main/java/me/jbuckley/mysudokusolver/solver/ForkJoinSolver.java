@@ -0,0 +1,360 @@
+package me.jbuckley.mysudokusolver.solver;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parallel version of the BitboardSolver search. The search tree is split at the first few
+ * branching cells, chosen by smallest domain, and each subtree below them becomes a task on a
+ * fixed pool of worker threads. ForkJoinPool needs API 21, so the pool is a ThreadPoolExecutor,
+ * and no task waits on another. One subtree often holds most of the search, so a task which
+ * finds the queue empty while it searches splits off its untried branches nearest the root as
+ * new tasks, for the idle workers to take.
+ *
+ * Each subtree is given an ordinal matching its position in the sequential search order, with
+ * a digit for each split above it. A subtree only gives up once a solution has been found in an
+ * earlier subtree, so the solution returned is always the one the sequential search would have
+ * found first.
+ *
+ * The workers stop once they have been idle for a while, so a solver which is no longer used
+ * does not keep its threads alive.
+ */
+public class ForkJoinSolver implements GridStrategy
+{
+    // Candidate index at each split is stored in four bits of the ordinal, the first split in
+    // the highest, leaving the sign bit clear.
+    private static final int ORDINAL_BITS = 4;
+    private static final int MAX_SPLITS = 15;
+    private static final long IDLE_SECONDS = 1;
+
+    // Branches a task tries between checks for an empty queue.
+    private static final int SPLIT_INTERVAL = 64;
+
+    private final ThreadPoolExecutor pool;
+    private final int splitDepth;
+
+    private final AtomicLong bestOrdinal = new AtomicLong();
+    private final AtomicLong totalAssignments = new AtomicLong();
+
+    // The tasks queued or running, which solve waits on until none are left.
+    private final AtomicInteger tasks = new AtomicInteger();
+    private final Object finished = new Object();
+
+    private SolveRecorder recorder = SolveRecorder.NONE;
+    private SolveBudget budget = new SolveBudget();
+
+    private volatile boolean timedOut;
+    private char[] solution;
+    private long assignments;
+    private long timeTaken;
+
+    /** Create a new ForkJoinSolver using every available core. */
+    public ForkJoinSolver()
+    {
+        this(Runtime.getRuntime().availableProcessors(), 2);
+    }
+
+    /**
+     * Create a new ForkJoinSolver.
+     *
+     * @param parallelism The number of worker threads.
+     * @param splitDepth The number of branching levels split into separate tasks before the
+     * search starts. At most 15, and later splits are only made within that limit.
+     */
+    public ForkJoinSolver(int parallelism, int splitDepth)
+    {
+        ThreadFactory threadFactory = new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "ForkJoinSolver");
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+
+        this.pool = new ThreadPoolExecutor(parallelism, parallelism, IDLE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), threadFactory);
+        this.pool.allowCoreThreadTimeOut(true);
+        this.splitDepth = splitDepth;
+    }
+
+    @Override
+    public char[] solve(char[] cells)
+    {
+        long start = System.nanoTime();
+        recorder.solveStarted();
+
+        solution = null;
+        timedOut = false;
+        bestOrdinal.set(Long.MAX_VALUE);
+        totalAssignments.set(0);
+
+        Bitboard board = new Bitboard();
+        if (board.load(cells)) {
+            // Held until the split is done, so the count cannot reach zero before then.
+            tasks.set(1);
+            split(board, 0, 0);
+
+            try {
+                finishTask();
+                synchronized (finished) {
+                    while (tasks.get() > 0) {
+                        finished.wait();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // The subtrees still queued or running stop at their next check.
+                timedOut = true;
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        recorder.solveFinished();
+        assignments = totalAssignments.get();
+        timeTaken = (System.nanoTime() - start) / 1000000;
+
+        // An earlier subtree may have been abandoned, so a solution found is not necessarily first.
+        return timedOut ? null : solution;
+    }
+
+    /**
+     * Branch on each candidate of the most constrained cell down to the split depth, queueing a
+     * task to search each subtree below it in the sequential order.
+     *
+     * @param board The board at the root of the subtree.
+     * @param depth The number of branching levels above the board.
+     * @param ordinal The ordinal of the subtree.
+     */
+    private void split(Bitboard board, int depth, long ordinal)
+    {
+        int cell = board.selectCell();
+
+        if (cell < 0) {
+            offerSolution(ordinal, board.toCells());
+        } else if (depth < splitDepth) {
+            int shift = ORDINAL_BITS * (MAX_SPLITS - 1 - depth);
+
+            int candidates = board.domains[cell];
+            for (int index = 0; candidates != 0; index++) {
+                int bit = candidates & -candidates;
+                candidates ^= bit;
+
+                Bitboard child = new Bitboard();
+                child.copyFrom(board);
+
+                boolean consistent = child.assign(cell, Integer.numberOfTrailingZeros(bit));
+                totalAssignments.addAndGet(child.getAssignments());
+                if (consistent) {
+                    split(child, depth + 1, ordinal | ((long) index << shift));
+                }
+            }
+        } else {
+            queueTask(new SearchTask(board, ordinal, depth));
+        }
+    }
+
+    private void queueTask(SearchTask task)
+    {
+        tasks.incrementAndGet();
+        pool.execute(task);
+    }
+
+    /** Count a task as finished, waking solve once none are left. */
+    private void finishTask()
+    {
+        if (tasks.decrementAndGet() == 0) {
+            synchronized (finished) {
+                finished.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public long getAssignments()
+    {
+        return assignments;
+    }
+
+    @Override
+    public long getTimeTaken()
+    {
+        return timeTaken;
+    }
+
+    /**
+     * Recorders are not thread safe, so only the start and end of each solve are recorded, not
+     * the search events of the workers.
+     */
+    @Override
+    public void setRecorder(SolveRecorder recorder)
+    {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void setBudget(SolveBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+
+    /**
+     * Keep the solution if it comes before any solution found so far in the sequential order.
+     *
+     * @param ordinal The ordinal of the subtree containing the solution.
+     * @param cells The solved cell values.
+     */
+    private synchronized void offerSolution(long ordinal, char[] cells)
+    {
+        if (ordinal < bestOrdinal.get()) {
+            bestOrdinal.set(ordinal);
+            solution = cells;
+        }
+    }
+
+    /** Sequential search of one subtree, which splits further while workers are idle. */
+    private class SearchTask implements Runnable
+    {
+        private final Bitboard board;
+        private final long splitAssignments;
+
+        // The branching cells of the search, with the candidates tried and not yet tried at each.
+        private final int[] cells = new int[Bitboard.CELLS];
+        private final int[] domains = new int[Bitboard.CELLS];
+        private final int[] untried = new int[Bitboard.CELLS];
+        private final int[] tried = new int[Bitboard.CELLS];
+        private final int[] checkpoints = new int[Bitboard.CELLS];
+
+        // Digits are added to the ordinal as the task splits, as the branches it keeps are fixed.
+        private long ordinal;
+        private int splits;
+        private int sinceSplit;
+
+        private SearchTask(Bitboard board, long ordinal, int splits)
+        {
+            this.board = board;
+            this.ordinal = ordinal;
+            this.splits = splits;
+            this.splitAssignments = board.getAssignments();
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                // Skip the subtree if an earlier one has already been solved.
+                if (bestOrdinal.get() > ordinal && !timedOut && search(0)) {
+                    offerSolution(ordinal, board.toCells());
+                }
+
+                // The assignments made while splitting have already been added to the total.
+                totalAssignments.addAndGet(board.getAssignments() - splitAssignments);
+            } finally {
+                finishTask();
+            }
+        }
+
+        /**
+         * Sequential search of the remainder of the subtree, in the same order as BitboardSolver.
+         *
+         * @param level The number of branching cells above this one in the task.
+         * @return True if the board has been completed.
+         */
+        private boolean search(int level)
+        {
+            boolean result = false;
+
+            int cell = board.selectCell();
+            if (cell < 0) {
+                result = true;
+            } else {
+                cells[level] = cell;
+                domains[level] = board.domains[cell];
+                untried[level] = board.domains[cell];
+                checkpoints[level] = board.checkpoint();
+
+                // Stop once an earlier subtree has found a solution or the budget has run out.
+                while (untried[level] != 0 && !result && bestOrdinal.get() > ordinal
+                        && !timedOut) {
+                    int bit = untried[level] & -untried[level];
+                    untried[level] ^= bit;
+                    tried[level] = bit;
+
+                    // Finished tasks and the splits have already added their assignments.
+                    long own = board.getAssignments() - splitAssignments;
+                    if (budget.isExhausted(totalAssignments.get() + own)) {
+                        timedOut = true;
+                    }
+
+                    if (++sinceSplit >= SPLIT_INTERVAL) {
+                        sinceSplit = 0;
+                        if (pool.getQueue().isEmpty()) {
+                            splitUntried(level);
+                        }
+                    }
+
+                    result = !timedOut
+                            && board.assign(cell, Integer.numberOfTrailingZeros(bit))
+                            && search(level + 1);
+                    if (!result) {
+                        board.undo(checkpoints[level]);
+                    }
+                }
+            }
+
+            return result;
+        }
+
+        /**
+         * Queue a task for each untried candidate of the shallowest branching cell which has any,
+         * leaving this task only the branch it is searching there.
+         *
+         * @param deepest The deepest branching cell of the search.
+         */
+        private void splitUntried(int deepest)
+        {
+            int level = 0;
+            while (level <= deepest && untried[level] == 0) {
+                level++;
+            }
+
+            if (level <= deepest && splits < MAX_SPLITS) {
+                int shift = ORDINAL_BITS * (MAX_SPLITS - 1 - splits);
+                long prefix = ordinal;
+                ordinal |= (long) Integer.bitCount(domains[level] & (tried[level] - 1)) << shift;
+                splits++;
+
+                Bitboard parent = new Bitboard();
+                parent.copyFrom(board, checkpoints[level]);
+
+                for (int rest = untried[level]; rest != 0; rest &= rest - 1) {
+                    int bit = rest & -rest;
+                    int index = Integer.bitCount(domains[level] & (bit - 1));
+
+                    Bitboard child = new Bitboard();
+                    child.copyFrom(parent);
+
+                    boolean consistent = child.assign(cells[level],
+                            Integer.numberOfTrailingZeros(bit));
+                    totalAssignments.addAndGet(child.getAssignments());
+                    if (consistent) {
+                        queueTask(new SearchTask(child, prefix | ((long) index << shift),
+                                splits));
+                    }
+                }
+                untried[level] = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package me.jbuckley.mysudokusolver.solver;
+
+/**
+ * A strategy for solving a sudoku puzzle given as its cell values.
+ */
+public interface GridStrategy
+{
+    /**
+     * Attempt to solve the puzzle.
+     *
+     * @param cells The starting values of the Sudoku grid. ' ' is an empty cell.
+     * @return The solved cell values, or null if there is no solution.
+     */
+    char[] solve(char[] cells);
+
+    /** @return The number of assignments made during the last solve. */
+    long getAssignments();
+
+    /** @return The time taken by the last solve in milliseconds. */
+    long getTimeTaken();
+
+    /**
+     * Set the recorder to receive search events from later solves.
+     *
+     * @param recorder The recorder, or SolveRecorder.NONE to record nothing.
+     */
+    void setRecorder(SolveRecorder recorder);
+
+    /**
+     * Set the budget checked by later solves. A solve which runs out of budget returns null, with
+     * the statistics of the search so far.
+     *
+     * @param budget The budget, which is only checked, never reset, by the strategy.
+     */
+    void setBudget(SolveBudget budget);
+
+    /** @return True if the last solve ran out of budget, so its result is unknown. */
+    boolean isTimedOut();
+}
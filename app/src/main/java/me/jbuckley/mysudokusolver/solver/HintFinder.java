@@ -0,0 +1,142 @@
+package me.jbuckley.mysudokusolver.solver;
+
+/**
+ * Finds the next cell a player can fill by logic alone. The LogicEngine is kept between calls
+ * along with every candidate it has removed, and values the player adds are placed into it
+ * directly. Only a value being cleared or changed makes it start again from the board, so
+ * finding a hint on every keystroke costs a few deductions rather than a solve.
+ *
+ * A hint found this way may only be possible because of a removal made for an earlier hint, which
+ * the player never saw. So if any kept removal needed a harder technique than the hint itself,
+ * the candidates are reloaded from the board and the hint found again before it is rated.
+ */
+public class HintFinder
+{
+    private final LogicEngine engine = new LogicEngine();
+    private final char[] known = new char[Bitboard.CELLS];
+
+    private boolean loaded;
+
+    // The hardest technique behind the candidate removals kept in the engine, or null for none.
+    private Technique kept;
+
+    /**
+     * Find the next value which can be deduced from the board.
+     *
+     * @param current The current cell values of the board. ' ' is an empty cell.
+     * @return A placement whose technique is the hardest needed to find it, and whose cells are
+     * every cell used along the way. Null if the board is full, contradicts itself, or needs
+     * techniques beyond those of the LogicEngine.
+     */
+    public Deduction nextHint(char[] current)
+    {
+        Deduction result = null;
+
+        if (update(current)) {
+            Technique before = kept;
+            result = findHint();
+
+            if (result != null && before != null && before.compareTo(result.getTechnique()) > 0) {
+                engine.load(current);
+                kept = null;
+                result = findHint();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Apply deductions from the engine's candidates until one places a value.
+     *
+     * @return The placement, rated by the hardest technique of the deductions leading to it, or
+     * null if there is none.
+     */
+    private Deduction findHint()
+    {
+        Deduction result = null;
+
+        if (!engine.isContradiction()) {
+            boolean[] used = new boolean[Bitboard.CELLS];
+            Technique hardest = null;
+            Deduction step = null;
+
+            // Candidate removals are kept in the engine, but the value is left for the player.
+            do {
+                step = engine.findStep();
+                if (step != null) {
+                    for (int cell : step.getCells()) {
+                        used[cell] = true;
+                    }
+                    if (hardest == null || step.getTechnique().compareTo(hardest) > 0) {
+                        hardest = step.getTechnique();
+                    }
+
+                    if (step.isPlacement()) {
+                        result = new Deduction(hardest, step.getCell(), step.getValue(),
+                                toCells(used));
+                    } else {
+                        engine.apply(step);
+                        if (kept == null || step.getTechnique().compareTo(kept) > 0) {
+                            kept = step.getTechnique();
+                        }
+                    }
+                }
+            } while (step != null && result == null && !engine.isContradiction());
+        }
+
+        return result;
+    }
+
+    /**
+     * Bring the engine up to date with the board, placing new values or reloading if any value
+     * has been removed or changed.
+     *
+     * @return False if the board contradicts itself.
+     */
+    private boolean update(char[] current)
+    {
+        boolean reload = !loaded;
+
+        for (int cell = 0; cell < Bitboard.CELLS && !reload; cell++) {
+            reload = known[cell] != ' ' && known[cell] != current[cell];
+        }
+
+        if (reload) {
+            engine.load(current);
+            kept = null;
+            System.arraycopy(current, 0, known, 0, Bitboard.CELLS);
+            loaded = true;
+        } else {
+            for (int cell = 0; cell < Bitboard.CELLS && !engine.isContradiction(); cell++) {
+                char c = current[cell];
+                if (known[cell] == ' ' && c >= '1' && c <= '9') {
+                    engine.placeValue(cell, c - '0');
+                    known[cell] = c;
+                }
+            }
+        }
+
+        return !engine.isContradiction();
+    }
+
+    private static int[] toCells(boolean[] used)
+    {
+        int total = 0;
+        for (boolean cellUsed : used) {
+            if (cellUsed) {
+                total++;
+            }
+        }
+
+        int[] result = new int[total];
+        total = 0;
+        for (int cell = 0; cell < used.length; cell++) {
+            if (used[cell]) {
+                result[total++] = cell;
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,690 @@
+package me.jbuckley.mysudokusolver.solver;
+
+/**
+ * Solves as far as possible by logical deduction alone, over 9-bit candidate masks. Each step
+ * tries the techniques in order of difficulty and applies the first deduction found, so easy
+ * puzzles never pay for the harder techniques. The number of steps found by each technique is
+ * counted, showing which of them pay for themselves.
+ */
+public final class LogicEngine
+{
+    // Rows, then columns, then boxes.
+    private static final int[][] UNITS = ConstraintGraph.UNITS;
+    private static final int[] ROW = ConstraintGraph.ROW;
+    private static final int[] COL = ConstraintGraph.COL;
+    private static final int[] BOX = ConstraintGraph.BOX;
+
+    private static final int BOXES = ConstraintGraph.BOXES;
+
+    private final short[] candidates = new short[Bitboard.CELLS];
+    private final byte[] values = new byte[Bitboard.CELLS];
+    private final long[] hits = new long[Technique.values().length];
+
+    private int placed;
+    private boolean contradiction;
+    private Technique hardest;
+
+    /**
+     * Reset the engine to the given cell values, removing each value from its peers.
+     *
+     * @param cells The cell values of the Sudoku grid. ' ' is an empty cell.
+     * @return False if the given values contradict each other.
+     */
+    public boolean load(char[] cells)
+    {
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            candidates[cell] = Bitboard.ALL;
+            values[cell] = 0;
+        }
+        for (int i = 0; i < hits.length; i++) {
+            hits[i] = 0;
+        }
+        placed = 0;
+        contradiction = false;
+        hardest = null;
+
+        for (int cell = 0; cell < Bitboard.CELLS && !contradiction; cell++) {
+            char c = cells[cell];
+            if (c >= '1' && c <= '9') {
+                place(cell, c - '0');
+            }
+        }
+
+        return !contradiction;
+    }
+
+    /**
+     * Apply deductions until the puzzle is solved or no technique makes progress.
+     *
+     * @return True if the puzzle has been solved.
+     */
+    public boolean run()
+    {
+        Deduction deduction = null;
+        do {
+            if (!isSolved() && !contradiction) {
+                deduction = findStep();
+                if (deduction != null) {
+                    apply(deduction);
+                }
+            }
+        } while (deduction != null && !isSolved() && !contradiction);
+
+        return isSolved();
+    }
+
+    /**
+     * Find the next deduction using the easiest technique which makes progress.
+     *
+     * @return The deduction, or null if none is found or the candidates contradict each other.
+     */
+    public Deduction findStep()
+    {
+        Deduction result = findNakedSingle();
+
+        if (result == null) {
+            result = findHiddenSingle();
+        }
+        if (result == null) {
+            result = findNakedSubset(2, Technique.NAKED_PAIR);
+        }
+        if (result == null) {
+            result = findHiddenSubset(2, Technique.HIDDEN_PAIR);
+        }
+        if (result == null) {
+            result = findPointing();
+        }
+        if (result == null) {
+            result = findBoxLineReduction();
+        }
+        if (result == null) {
+            result = findNakedSubset(3, Technique.NAKED_TRIPLE);
+        }
+        if (result == null) {
+            result = findHiddenSubset(3, Technique.HIDDEN_TRIPLE);
+        }
+        if (result == null) {
+            result = findXWing();
+        }
+
+        // A contradiction found part way through makes any deduction meaningless.
+        return contradiction ? null : result;
+    }
+
+    /**
+     * Place a value which was not deduced, such as one entered by the player.
+     *
+     * @param cell The cell index.
+     * @param value The value, 1-9.
+     * @return False if the value contradicts the candidates.
+     */
+    public boolean placeValue(int cell, int value)
+    {
+        place(cell, value);
+
+        return !contradiction;
+    }
+
+    /**
+     * Apply a deduction found by findStep, counting it against its technique.
+     *
+     * @param deduction The deduction.
+     */
+    public void apply(Deduction deduction)
+    {
+        if (deduction.isPlacement()) {
+            place(deduction.getCell(), deduction.getValue());
+        } else {
+            for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+                int removals = deduction.getRemovals(cell);
+                if (removals != 0) {
+                    candidates[cell] &= ~removals;
+                    contradiction |= candidates[cell] == 0;
+                }
+            }
+        }
+
+        Technique technique = deduction.getTechnique();
+        hits[technique.ordinal()]++;
+        if (hardest == null || technique.compareTo(hardest) > 0) {
+            hardest = technique;
+        }
+    }
+
+    /** @return True if every cell has a value. */
+    public boolean isSolved()
+    {
+        return placed == Bitboard.CELLS;
+    }
+
+    /** @return True if the values or candidates have been found to contradict each other. */
+    public boolean isContradiction()
+    {
+        return contradiction;
+    }
+
+    /**
+     * @param technique The technique.
+     * @return The number of deductions applied using the technique since the last load.
+     */
+    public long getHits(Technique technique)
+    {
+        return hits[technique.ordinal()];
+    }
+
+    /** @return The hardest technique applied since the last load, or null if none was. */
+    public Technique getHardest()
+    {
+        return hardest;
+    }
+
+    /**
+     * @param cell The cell index.
+     * @return The 9-bit mask of candidates left for the cell.
+     */
+    public int getCandidates(int cell)
+    {
+        return candidates[cell];
+    }
+
+    /** @return The cell values as characters. ' ' is a cell without a value. */
+    public char[] toCells()
+    {
+        char[] result = new char[Bitboard.CELLS];
+
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            result[cell] = values[cell] == 0 ? ' ' : (char) ('0' + values[cell]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Place a value in a cell and remove it from the candidates of the cell's peers.
+     *
+     * @param cell The cell index.
+     * @param value The value, 1-9.
+     */
+    private void place(int cell, int value)
+    {
+        int bit = 1 << (value - 1);
+
+        contradiction |= (candidates[cell] & bit) == 0;
+        candidates[cell] = (short) bit;
+        values[cell] = (byte) value;
+        placed++;
+
+        for (int peer : ConstraintGraph.PEERS[cell]) {
+            if (values[peer] == 0 && (candidates[peer] & bit) != 0) {
+                candidates[peer] &= ~bit;
+                contradiction |= candidates[peer] == 0;
+            }
+        }
+    }
+
+    /** @return A cell with one candidate left, justified by its peers with values. */
+    private Deduction findNakedSingle()
+    {
+        Deduction result = null;
+
+        for (int cell = 0; cell < Bitboard.CELLS && result == null; cell++) {
+            int domain = candidates[cell];
+            if (values[cell] == 0 && domain != 0 && (domain & (domain - 1)) == 0) {
+                int[] peers = ConstraintGraph.PEERS[cell];
+                int total = 0;
+                int[] cells = new int[peers.length];
+                for (int peer : peers) {
+                    if (values[peer] != 0) {
+                        cells[total++] = peer;
+                    }
+                }
+
+                result = new Deduction(Technique.NAKED_SINGLE, cell,
+                        Integer.numberOfTrailingZeros(domain) + 1, copyOf(cells, total));
+            }
+        }
+
+        return result;
+    }
+
+    /** @return A digit with one possible cell left in some unit, justified by the unit. */
+    private Deduction findHiddenSingle()
+    {
+        Deduction result = null;
+
+        for (int u = 0; u < UNITS.length && result == null && !contradiction; u++) {
+            int[] unit = UNITS[u];
+
+            int once = 0;
+            int twice = 0;
+            int used = 0;
+            for (int cell : unit) {
+                int domain = candidates[cell];
+                if (values[cell] != 0) {
+                    used |= domain;
+                } else {
+                    twice |= once & domain;
+                    once |= domain;
+                }
+            }
+
+            // A digit with no possible cell cannot be placed at all.
+            contradiction |= (once | used) != Bitboard.ALL;
+
+            int hidden = once & ~twice & ~used;
+            if (hidden != 0 && !contradiction) {
+                int bit = hidden & -hidden;
+                int cell = findCell(unit, bit);
+                result = new Deduction(Technique.HIDDEN_SINGLE, cell,
+                        Integer.numberOfTrailingZeros(bit) + 1, unit.clone());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Find k cells of a unit with only k candidates between them, which can then be removed from
+     * the rest of the unit.
+     *
+     * @param k The number of cells, 2 or 3.
+     * @param technique The technique to report.
+     * @return The deduction, or null if there is none.
+     */
+    private Deduction findNakedSubset(int k, Technique technique)
+    {
+        Deduction result = null;
+
+        int[] chosen = new int[Bitboard.SIZE];
+        for (int u = 0; u < UNITS.length && result == null; u++) {
+            int[] unit = UNITS[u];
+
+            int total = 0;
+            for (int cell : unit) {
+                int size = Integer.bitCount(candidates[cell]);
+                if (values[cell] == 0 && size >= 2 && size <= k) {
+                    chosen[total++] = cell;
+                }
+            }
+
+            for (int i = 0; i < total && result == null; i++) {
+                for (int j = i + 1; j < total && result == null; j++) {
+                    int pair = candidates[chosen[i]] | candidates[chosen[j]];
+                    if (k == 2) {
+                        result = nakedSubset(unit, pair, technique, chosen[i], chosen[j]);
+                    } else {
+                        for (int l = j + 1; l < total && result == null; l++) {
+                            result = nakedSubset(unit, pair | candidates[chosen[l]], technique,
+                                    chosen[i], chosen[j], chosen[l]);
+                        }
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove the subset's candidates from the other cells of the unit.
+     *
+     * @return The deduction, or null if the subset has too many candidates or removes nothing.
+     */
+    private Deduction nakedSubset(int[] unit, int union, Technique technique, int... subset)
+    {
+        Deduction result = null;
+
+        if (Integer.bitCount(union) == subset.length) {
+            short[] removals = null;
+            for (int cell : unit) {
+                if (values[cell] == 0 && (candidates[cell] & union) != 0
+                        && !contains(subset, cell)) {
+                    removals = addRemoval(removals, cell, union);
+                }
+            }
+
+            if (removals != null) {
+                result = new Deduction(technique, subset, removals);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Find k digits of a unit with only k possible cells between them, whose other candidates
+     * can then be removed.
+     *
+     * @param k The number of digits, 2 or 3.
+     * @param technique The technique to report.
+     * @return The deduction, or null if there is none.
+     */
+    private Deduction findHiddenSubset(int k, Technique technique)
+    {
+        Deduction result = null;
+
+        int[] positions = new int[Bitboard.SIZE];
+        int[] chosen = new int[Bitboard.SIZE];
+        for (int u = 0; u < UNITS.length && result == null; u++) {
+            int[] unit = UNITS[u];
+            unitPositions(unit, positions);
+
+            int total = 0;
+            for (int digit = 0; digit < Bitboard.SIZE; digit++) {
+                int size = Integer.bitCount(positions[digit]);
+                if (size >= 2 && size <= k) {
+                    chosen[total++] = digit;
+                }
+            }
+
+            for (int i = 0; i < total && result == null; i++) {
+                for (int j = i + 1; j < total && result == null; j++) {
+                    int a = chosen[i];
+                    int b = chosen[j];
+                    int digits = (1 << a) | (1 << b);
+                    int cells = positions[a] | positions[b];
+                    if (k == 2) {
+                        result = hiddenSubset(unit, digits, cells, k, technique);
+                    } else {
+                        for (int l = j + 1; l < total && result == null; l++) {
+                            int c = chosen[l];
+                            result = hiddenSubset(unit, digits | (1 << c), cells | positions[c],
+                                    k, technique);
+                        }
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove every other candidate from the cells the subset's digits are confined to.
+     *
+     * @param unit The unit.
+     * @param digits The candidate mask of the subset's digits.
+     * @param cellMask The positions within the unit the digits are confined to.
+     * @param k The size of the subset.
+     * @param technique The technique to report.
+     * @return The deduction, or null if the digits are not confined to k cells or nothing is
+     * removed.
+     */
+    private Deduction hiddenSubset(int[] unit, int digits, int cellMask, int k,
+                                   Technique technique)
+    {
+        Deduction result = null;
+
+        if (Integer.bitCount(cellMask) == k) {
+            int[] subset = new int[k];
+            int total = 0;
+            short[] removals = null;
+
+            for (int i = 0; i < Bitboard.SIZE; i++) {
+                if ((cellMask & (1 << i)) != 0) {
+                    int cell = unit[i];
+                    subset[total++] = cell;
+
+                    int others = candidates[cell] & ~digits;
+                    if (others != 0) {
+                        removals = addRemoval(removals, cell, others);
+                    }
+                }
+            }
+
+            if (removals != null) {
+                result = new Deduction(technique, subset, removals);
+            }
+        }
+
+        return result;
+    }
+
+    /** @return A digit confined to one line of a box, removed from the rest of the line. */
+    private Deduction findPointing()
+    {
+        Deduction result = null;
+
+        int[] positions = new int[Bitboard.SIZE];
+        for (int box = 0; box < Bitboard.SIZE && result == null; box++) {
+            int[] unit = UNITS[BOXES + box];
+            unitPositions(unit, positions);
+
+            for (int digit = 0; digit < Bitboard.SIZE && result == null; digit++) {
+                int mask = positions[digit];
+                if (mask != 0) {
+                    int first = unit[Integer.numberOfTrailingZeros(mask)];
+                    if (isWithin(unit, mask, ROW, ROW[first])) {
+                        result = removeOutside(UNITS[ROW[first]], unit, mask, digit,
+                                Technique.POINTING_PAIR);
+                    } else if (isWithin(unit, mask, COL, COL[first])) {
+                        result = removeOutside(UNITS[Bitboard.SIZE + COL[first]], unit,
+                                mask, digit, Technique.POINTING_PAIR);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /** @return A digit confined to one box within a line, removed from the rest of the box. */
+    private Deduction findBoxLineReduction()
+    {
+        Deduction result = null;
+
+        int[] positions = new int[Bitboard.SIZE];
+        for (int line = 0; line < BOXES && result == null; line++) {
+            int[] unit = UNITS[line];
+            unitPositions(unit, positions);
+
+            for (int digit = 0; digit < Bitboard.SIZE && result == null; digit++) {
+                int mask = positions[digit];
+                if (mask != 0) {
+                    int box = BOX[unit[Integer.numberOfTrailingZeros(mask)]];
+                    if (isWithin(unit, mask, BOX, box)) {
+                        result = removeOutside(UNITS[BOXES + box], unit, mask, digit,
+                                Technique.BOX_LINE_REDUCTION);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Find a digit with exactly two possible cells in each of two rows, in the same two columns,
+     * so it can be removed from the rest of those columns. Columns are checked the same way.
+     *
+     * @return The deduction, or null if there is none.
+     */
+    private Deduction findXWing()
+    {
+        Deduction result = null;
+
+        int[] positions = new int[Bitboard.SIZE];
+        int[][] lineMasks = new int[Bitboard.SIZE][Bitboard.SIZE];
+        for (int base = 0; base < BOXES && result == null; base += Bitboard.SIZE) {
+            for (int line = 0; line < Bitboard.SIZE; line++) {
+                unitPositions(UNITS[base + line], positions);
+                for (int digit = 0; digit < Bitboard.SIZE; digit++) {
+                    lineMasks[digit][line] = positions[digit];
+                }
+            }
+
+            // Rows hold columns at their positions, and columns hold rows.
+            int crossBase = Bitboard.SIZE - base;
+            for (int digit = 0; digit < Bitboard.SIZE && result == null; digit++) {
+                int[] masks = lineMasks[digit];
+                for (int a = 0; a < Bitboard.SIZE && result == null; a++) {
+                    if (Integer.bitCount(masks[a]) == 2) {
+                        for (int b = a + 1; b < Bitboard.SIZE && result == null; b++) {
+                            if (masks[b] == masks[a]) {
+                                result = xWing(base, crossBase, a, b, masks[a], digit);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove the digit from the two crossing lines, outside of the two base lines.
+     *
+     * @return The deduction, or null if nothing is removed.
+     */
+    private Deduction xWing(int base, int crossBase, int a, int b, int crossMask, int digit)
+    {
+        Deduction result = null;
+
+        int bit = 1 << digit;
+        int first = Integer.numberOfTrailingZeros(crossMask);
+        int second = 31 - Integer.numberOfLeadingZeros(crossMask);
+
+        short[] removals = null;
+        for (int cross : new int[] {first, second}) {
+            int[] unit = UNITS[crossBase + cross];
+            for (int i = 0; i < Bitboard.SIZE; i++) {
+                int cell = unit[i];
+                if (i != a && i != b && values[cell] == 0 && (candidates[cell] & bit) != 0) {
+                    removals = addRemoval(removals, cell, bit);
+                }
+            }
+        }
+
+        if (removals != null) {
+            int[] cells = {UNITS[base + a][first], UNITS[base + a][second],
+                    UNITS[base + b][first], UNITS[base + b][second]};
+            result = new Deduction(Technique.X_WING, cells, removals);
+        }
+
+        return result;
+    }
+
+    /**
+     * Find the positions within a unit where each digit is still possible, leaving digits which
+     * already have a value in the unit with no positions.
+     *
+     * @param unit The unit.
+     * @param positions Set to the 9-bit position mask of each zero based digit.
+     */
+    private void unitPositions(int[] unit, int[] positions)
+    {
+        int used = 0;
+        for (int digit = 0; digit < Bitboard.SIZE; digit++) {
+            positions[digit] = 0;
+        }
+
+        for (int i = 0; i < Bitboard.SIZE; i++) {
+            int cell = unit[i];
+            if (values[cell] != 0) {
+                used |= candidates[cell];
+            } else {
+                int domain = candidates[cell];
+                while (domain != 0) {
+                    int bit = domain & -domain;
+                    domain ^= bit;
+                    positions[Integer.numberOfTrailingZeros(bit)] |= 1 << i;
+                }
+            }
+        }
+
+        while (used != 0) {
+            int bit = used & -used;
+            used ^= bit;
+            positions[Integer.numberOfTrailingZeros(bit)] = 0;
+        }
+    }
+
+    /** @return True if every position of the mask lies in the same row, column or box. */
+    private static boolean isWithin(int[] unit, int mask, int[] lineOf, int line)
+    {
+        boolean result = true;
+
+        for (int i = 0; i < Bitboard.SIZE && result; i++) {
+            if ((mask & (1 << i)) != 0) {
+                result = lineOf[unit[i]] == line;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove the digit from the cells of the target unit outside of the source unit.
+     *
+     * @return The deduction, or null if nothing is removed.
+     */
+    private Deduction removeOutside(int[] target, int[] source, int mask, int digit,
+                                    Technique technique)
+    {
+        Deduction result = null;
+
+        int bit = 1 << digit;
+        short[] removals = null;
+        for (int cell : target) {
+            if (values[cell] == 0 && (candidates[cell] & bit) != 0 && !contains(source, cell)) {
+                removals = addRemoval(removals, cell, bit);
+            }
+        }
+
+        if (removals != null) {
+            int[] cells = new int[Integer.bitCount(mask)];
+            int total = 0;
+            for (int i = 0; i < Bitboard.SIZE; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    cells[total++] = source[i];
+                }
+            }
+            result = new Deduction(technique, cells, removals);
+        }
+
+        return result;
+    }
+
+    /** @return The first cell of the unit with the candidate bit. */
+    private int findCell(int[] unit, int bit)
+    {
+        int result = -1;
+
+        for (int i = 0; i < unit.length && result < 0; i++) {
+            if (values[unit[i]] == 0 && (candidates[unit[i]] & bit) != 0) {
+                result = unit[i];
+            }
+        }
+
+        return result;
+    }
+
+    /** Record candidates to remove from a cell, creating the removal masks if needed. */
+    private short[] addRemoval(short[] removals, int cell, int mask)
+    {
+        short[] result = removals != null ? removals : new short[Bitboard.CELLS];
+        result[cell] |= candidates[cell] & mask;
+
+        return result;
+    }
+
+    private static boolean contains(int[] cells, int cell)
+    {
+        boolean result = false;
+
+        for (int i = 0; i < cells.length && !result; i++) {
+            result = cells[i] == cell;
+        }
+
+        return result;
+    }
+
+    private static int[] copyOf(int[] cells, int length)
+    {
+        int[] result = new int[length];
+        System.arraycopy(cells, 0, result, 0, length);
+
+        return result;
+    }
+}
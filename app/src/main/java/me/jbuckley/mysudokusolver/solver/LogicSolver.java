@@ -0,0 +1,158 @@
+package me.jbuckley.mysudokusolver.solver;
+
+/**
+ * Applies the LogicEngine before handing the puzzle to another strategy. Most published puzzles
+ * are solved by logic alone, with no search at all. Otherwise the values placed by logic are
+ * passed on as extra givens, though the candidates removed cannot be passed to the strategy.
+ */
+public class LogicSolver implements GridStrategy
+{
+    private final LogicEngine engine = new LogicEngine();
+    private final GridStrategy fallback;
+
+    private SolveRecorder recorder = SolveRecorder.NONE;
+    private SolveBudget budget = new SolveBudget();
+
+    private boolean solvedByLogic;
+    private boolean timedOut;
+    private long assignments;
+    private long timeTaken;
+
+    /**
+     * Create a new LogicSolver.
+     *
+     * @param fallback The strategy used when logic alone does not solve the puzzle.
+     */
+    public LogicSolver(GridStrategy fallback)
+    {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public char[] solve(char[] cells)
+    {
+        char[] result = null;
+
+        long start = System.nanoTime();
+        recorder.solveStarted();
+
+        solvedByLogic = false;
+        timedOut = false;
+        assignments = 0;
+
+        if (engine.load(cells)) {
+            solvedByLogic = engine.run();
+
+            if (solvedByLogic) {
+                result = engine.toCells();
+            } else if (!engine.isContradiction()) {
+                fallback.setBudget(budget);
+                result = fallback.solve(engine.toCells());
+                assignments = fallback.getAssignments();
+                timedOut = fallback.isTimedOut();
+            }
+        }
+
+        recorder.solveFinished();
+        timeTaken = (System.nanoTime() - start) / 1000000;
+
+        return result;
+    }
+
+    /** @return True if the last solve needed no search. */
+    public boolean isSolvedByLogic()
+    {
+        return solvedByLogic;
+    }
+
+    /**
+     * @param technique The technique.
+     * @return The number of deductions made using the technique during the last solve.
+     */
+    public long getHits(Technique technique)
+    {
+        return engine.getHits(technique);
+    }
+
+    /** @return The assignments made by the fallback strategy, or 0 if logic solved the puzzle. */
+    @Override
+    public long getAssignments()
+    {
+        return assignments;
+    }
+
+    @Override
+    public long getTimeTaken()
+    {
+        return timeTaken;
+    }
+
+    /**
+     * The fallback strategy's search events are recorded, but not the deductions. The fallback
+     * does not pass on its start and finish, which would restart the recorder partway through the
+     * solve and leave the time spent on logic out of the total.
+     */
+    @Override
+    public void setRecorder(SolveRecorder recorder)
+    {
+        this.recorder = recorder;
+        fallback.setRecorder(new SearchEvents(recorder));
+    }
+
+    @Override
+    public void setBudget(SolveBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+
+    /** Passes on the search events of the fallback, but not the start and end of its solve. */
+    private static class SearchEvents implements SolveRecorder
+    {
+        private final SolveRecorder recorder;
+
+        private SearchEvents(SolveRecorder recorder)
+        {
+            this.recorder = recorder;
+        }
+
+        @Override
+        public void solveStarted()
+        {
+        }
+
+        @Override
+        public void solveFinished()
+        {
+        }
+
+        @Override
+        public void nodeVisited(int depth)
+        {
+            recorder.nodeVisited(depth);
+        }
+
+        @Override
+        public void backtracked()
+        {
+            recorder.backtracked();
+        }
+
+        @Override
+        public void propagationStarted()
+        {
+            recorder.propagationStarted();
+        }
+
+        @Override
+        public void propagationFinished(boolean wipedOut)
+        {
+            recorder.propagationFinished(wipedOut);
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package me.jbuckley.mysudokusolver.solver;
+
+import java.util.Arrays;
+
+/**
+ * Searches with the propagation of the GAC TrailSolver, but learns from each failed branch. Every
+ * candidate removed is explained by the set of decision levels that caused it, so a wiped out
+ * domain can be traced back to the decisions responsible. The search then jumps straight back to
+ * the latest of those decisions, skipping any in between which played no part, and records the
+ * decisions as a nogood: a set of assignments which cannot all hold. Nogoods are watched by two of
+ * their assignments, in the way of a CDCL SAT solver, and remove a candidate whenever all but one
+ * of their assignments are made again elsewhere in the search.
+ */
+public class NogoodSolver implements GridStrategy
+{
+    private static final int LITERALS = Bitboard.CELLS * Bitboard.SIZE;
+
+    // Longer nogoods are rarely repeated, so are not worth watching.
+    private static final int MAX_NOGOOD_SIZE = 12;
+    private static final int NOGOOD_CAPACITY = 64 * 1024;
+
+    private final DomainTrail store = new DomainTrail();
+    private final int[] singles = new int[Bitboard.CELLS];
+
+    // Decision levels are at most 81, so a set of them is held in two longs.
+    private final long[] removedLow = new long[LITERALS];
+    private final long[] removedHigh = new long[LITERALS];
+    private final long[] assignedLow = new long[Bitboard.CELLS];
+    private final long[] assignedHigh = new long[Bitboard.CELLS];
+    private final int[] decisions = new int[Bitboard.CELLS + 1];
+
+    private final int[] nogoodLiterals = new int[NOGOOD_CAPACITY];
+    private final int[] nogoodStarts = new int[NOGOOD_CAPACITY / 2];
+    private final int[] nogoodSizes = new int[NOGOOD_CAPACITY / 2];
+    private final int[][] watches = new int[LITERALS][];
+    private final int[] watchCounts = new int[LITERALS];
+
+    private SolveRecorder recorder = SolveRecorder.NONE;
+    private SolveBudget budget = new SolveBudget();
+
+    private long conflictLow;
+    private long conflictHigh;
+    private int head;
+    private int tail;
+    private int nogoods;
+    private int literalsUsed;
+
+    private boolean timedOut;
+    private long assignments;
+    private long timeTaken;
+
+    public NogoodSolver()
+    {
+        for (int literal = 0; literal < LITERALS; literal++) {
+            watches[literal] = new int[4];
+        }
+    }
+
+    @Override
+    public char[] solve(char[] cells)
+    {
+        char[] result = null;
+
+        long start = System.nanoTime();
+        recorder.solveStarted();
+        timedOut = false;
+        assignments = 0;
+
+        if (load(cells) && search(1)) {
+            result = store.toCells();
+        }
+
+        recorder.solveFinished();
+        timeTaken = (System.nanoTime() - start) / 1000000;
+
+        return result;
+    }
+
+    /** @return The number of nogoods learned during the last solve. */
+    public int getNogoods()
+    {
+        return nogoods;
+    }
+
+    /** @return False if the given values are inconsistent. */
+    private boolean load(char[] cells)
+    {
+        boolean result = true;
+
+        store.reset();
+        Arrays.fill(watchCounts, 0);
+        nogoods = 0;
+        literalsUsed = 0;
+        head = 0;
+        tail = 0;
+
+        // Givens are explained by the empty set, as no decision caused them.
+        for (int cell = 0; cell < Bitboard.CELLS && result; cell++) {
+            char c = cells[cell];
+            if (c >= '1' && c <= '9') {
+                result = restrict(cell, 1 << (c - '1'), 0, 0) && propagate();
+            }
+        }
+
+        assignments = 0;
+
+        return result;
+    }
+
+    /**
+     * Decide each candidate of the most constrained cell in turn. A failed candidate is removed,
+     * explained by the other decisions its conflict involved. If its conflict did not involve
+     * this decision at all, trying the other candidates would fail in the same way, so the
+     * search backjumps instead.
+     *
+     * @param level The decision level of this decision.
+     * @return True if every cell has been assigned. Otherwise the conflict fields hold the
+     * decision levels which caused the failure, all of them earlier than this one.
+     */
+    private boolean search(int level)
+    {
+        boolean result = false;
+        boolean backjump = false;
+
+        int cell = store.selectCell();
+        if (cell < 0) {
+            result = true;
+        } else {
+            int candidates = store.domains[cell];
+            long levelLow = level < 64 ? 1L << level : 0;
+            long levelHigh = level < 64 ? 0 : 1L << (level - 64);
+
+            while (candidates != 0 && !result && !backjump && !timedOut) {
+                int bit = candidates & -candidates;
+                candidates ^= bit;
+                int digit = Integer.numberOfTrailingZeros(bit);
+
+                int checkpoint = store.checkpoint();
+                recorder.nodeVisited(level - 1);
+                timedOut = budget.isExhausted(assignments);
+                decisions[level] = cell * Bitboard.SIZE + digit;
+
+                recorder.propagationStarted();
+                boolean consistent = restrict(cell, bit, levelLow, levelHigh) && propagate();
+                recorder.propagationFinished(!consistent);
+
+                result = consistent && !timedOut && search(level + 1);
+                if (!result) {
+                    store.undo(checkpoint);
+                    recorder.backtracked();
+                    head = 0;
+                    tail = 0;
+
+                    if ((conflictLow & levelLow) == 0 && (conflictHigh & levelHigh) == 0) {
+                        backjump = true;
+                    } else if (!timedOut) {
+                        learn(level);
+                        long low = conflictLow & ~levelLow;
+                        long high = conflictHigh & ~levelHigh;
+
+                        // Once the cell is left with a single candidate it is assigned here,
+                        // and the search carries on at the same level.
+                        if (!remove(cell, digit, low, high) || !propagate()) {
+                            backjump = true;
+                        } else if (store.values[cell] != 0) {
+                            result = search(level);
+                            backjump = !result;
+                        }
+                        candidates &= store.domains[cell];
+                    }
+                }
+            }
+
+            if (!result && !backjump) {
+                explainWipeout(cell);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Record the decisions of the conflict as a nogood. It is watched by this level's decision,
+     * which has just been undone, and the latest of the others, which will be undone first.
+     */
+    private void learn(int level)
+    {
+        int size = Long.bitCount(conflictLow) + Long.bitCount(conflictHigh);
+
+        if (size > 1 && size <= MAX_NOGOOD_SIZE && nogoods < nogoodStarts.length
+                && literalsUsed + size <= nogoodLiterals.length) {
+            int start = literalsUsed;
+            nogoodLiterals[literalsUsed++] = decisions[level];
+
+            for (int other = level - 1; other > 0; other--) {
+                if (containsLevel(conflictLow, conflictHigh, other)) {
+                    nogoodLiterals[literalsUsed++] = decisions[other];
+                }
+            }
+
+            nogoodStarts[nogoods] = start;
+            nogoodSizes[nogoods] = size;
+            watch(nogoodLiterals[start], nogoods);
+            watch(nogoodLiterals[start + 1], nogoods);
+            nogoods++;
+        }
+    }
+
+    /** Add the nogood to the watch list of the literal. */
+    private void watch(int literal, int nogood)
+    {
+        int count = watchCounts[literal];
+        if (count == watches[literal].length) {
+            watches[literal] = Arrays.copyOf(watches[literal], count * 2);
+        }
+        watches[literal][count] = nogood;
+        watchCounts[literal] = count + 1;
+    }
+
+    /**
+     * Remove every candidate of a cell outside the mask.
+     *
+     * @return False if the cell's domain was wiped out, leaving the conflict fields set.
+     */
+    private boolean restrict(int cell, int mask, long low, long high)
+    {
+        boolean result = true;
+
+        int removed = store.domains[cell] & ~mask;
+        while (removed != 0 && result) {
+            int bit = removed & -removed;
+            removed ^= bit;
+            result = remove(cell, Integer.numberOfTrailingZeros(bit), low, high);
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove a candidate from a cell, explained by a set of decision levels. A cell left with a
+     * single candidate is queued to be assigned by propagate.
+     *
+     * @return False if the cell's domain was wiped out, leaving the conflict fields set.
+     */
+    private boolean remove(int cell, int digit, long low, long high)
+    {
+        boolean result = true;
+        int bit = 1 << digit;
+
+        if ((store.domains[cell] & bit) != 0) {
+            int literal = cell * Bitboard.SIZE + digit;
+            removedLow[literal] = low;
+            removedHigh[literal] = high;
+
+            int domain = store.restrict(cell, ~bit);
+            if (domain == 0) {
+                explainWipeout(cell);
+                result = false;
+            } else if ((domain & (domain - 1)) == 0) {
+                singles[tail++] = cell;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Assign every queued cell its last candidate, removing it from the cell's peers and
+     * checking the nogoods watching the assignment, until nothing more is queued.
+     *
+     * @return False on a conflict, leaving the conflict fields set.
+     */
+    private boolean propagate()
+    {
+        boolean result = true;
+
+        while (head < tail && result) {
+            int cell = singles[head++];
+            int bit = store.domains[cell];
+            int digit = Integer.numberOfTrailingZeros(bit);
+
+            // The assignment is explained by the removal of every other candidate.
+            long low = 0;
+            long high = 0;
+            int literal = cell * Bitboard.SIZE;
+            for (int other = 0; other < Bitboard.SIZE; other++) {
+                if (other != digit) {
+                    low |= removedLow[literal + other];
+                    high |= removedHigh[literal + other];
+                }
+            }
+            assignedLow[cell] = low;
+            assignedHigh[cell] = high;
+            store.setValue(cell, digit);
+            assignments++;
+
+            int[] peers = ConstraintGraph.PEERS[cell];
+            for (int i = 0; i < peers.length && result; i++) {
+                result = remove(peers[i], digit, low, high);
+            }
+
+            if (result) {
+                result = checkNogoods(literal + digit);
+            }
+        }
+
+        head = 0;
+        tail = 0;
+
+        return result;
+    }
+
+    /**
+     * Visit the nogoods watching a literal which has just become true. Each moves its watch to
+     * another literal which is not true if it can. Otherwise the nogood's other watched literal
+     * is the only one which is not true, so its candidate is removed.
+     *
+     * @return False on a conflict, leaving the conflict fields set.
+     */
+    private boolean checkNogoods(int literal)
+    {
+        boolean result = true;
+
+        int[] list = watches[literal];
+        int count = watchCounts[literal];
+        int i = 0;
+
+        while (i < count && result) {
+            int nogood = list[i];
+            int start = nogoodStarts[nogood];
+            int end = start + nogoodSizes[nogood];
+
+            // Keep the literal which has become true second.
+            if (nogoodLiterals[start] == literal) {
+                nogoodLiterals[start] = nogoodLiterals[start + 1];
+                nogoodLiterals[start + 1] = literal;
+            }
+            int other = nogoodLiterals[start];
+
+            int replacement = -1;
+            if (!isFalse(other)) {
+                for (int k = start + 2; k < end && replacement < 0; k++) {
+                    if (!isTrue(nogoodLiterals[k])) {
+                        replacement = k;
+                    }
+                }
+            }
+
+            if (isFalse(other)) {
+                i++;
+            } else if (replacement >= 0) {
+                nogoodLiterals[start + 1] = nogoodLiterals[replacement];
+                nogoodLiterals[replacement] = literal;
+                watch(nogoodLiterals[start + 1], nogood);
+                list[i] = list[--count];
+            } else {
+                long low = 0;
+                long high = 0;
+                for (int k = start + 1; k < end; k++) {
+                    int cell = nogoodLiterals[k] / Bitboard.SIZE;
+                    low |= assignedLow[cell];
+                    high |= assignedHigh[cell];
+                }
+
+                int cell = other / Bitboard.SIZE;
+                if (isTrue(other)) {
+                    conflictLow = low | assignedLow[cell];
+                    conflictHigh = high | assignedHigh[cell];
+                    result = false;
+                } else {
+                    result = remove(cell, other % Bitboard.SIZE, low, high);
+                }
+                i++;
+            }
+        }
+
+        watchCounts[literal] = count;
+
+        return result;
+    }
+
+    /** @return True if the literal's cell has been assigned its digit. */
+    private boolean isTrue(int literal)
+    {
+        return store.values[literal / Bitboard.SIZE] == literal % Bitboard.SIZE + 1;
+    }
+
+    /** @return True if the literal's digit has been removed from its cell. */
+    private boolean isFalse(int literal)
+    {
+        return (store.domains[literal / Bitboard.SIZE] & (1 << (literal % Bitboard.SIZE))) == 0;
+    }
+
+    /** Set the conflict fields to every decision level which removed a candidate of the cell. */
+    private void explainWipeout(int cell)
+    {
+        conflictLow = 0;
+        conflictHigh = 0;
+
+        int literal = cell * Bitboard.SIZE;
+        for (int digit = 0; digit < Bitboard.SIZE; digit++) {
+            conflictLow |= removedLow[literal + digit];
+            conflictHigh |= removedHigh[literal + digit];
+        }
+    }
+
+    private static boolean containsLevel(long low, long high, int level)
+    {
+        return level < 64 ? (low & (1L << level)) != 0 : (high & (1L << (level - 64))) != 0;
+    }
+
+    /** @return The assignments made since the givens were placed, decided or propagated. */
+    @Override
+    public long getAssignments()
+    {
+        return assignments;
+    }
+
+    @Override
+    public long getTimeTaken()
+    {
+        return timeTaken;
+    }
+
+    @Override
+    public void setRecorder(SolveRecorder recorder)
+    {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void setBudget(SolveBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+}
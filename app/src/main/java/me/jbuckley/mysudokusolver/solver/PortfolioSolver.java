@@ -0,0 +1,290 @@
+package me.jbuckley.mysudokusolver.solver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Races several strategies against each other on a thread pool shared by every race. The first
+ * strategy to finish decides the result, and the others are cancelled through their budget. The
+ * strategies should check their budget often, as a loser which does not keeps a worker busy.
+ */
+public class PortfolioSolver implements GridStrategy
+{
+    // How long the losers are given to stop at their next budget check once the race is decided.
+    private static final long LOSER_STOP_MILLIS = 100;
+    private static final long IDLE_SECONDS = 1;
+
+    private static ThreadPoolExecutor pool;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<GridStrategy> strategies = new ArrayList<>();
+    private final Map<String, Long> loserAssignments = new LinkedHashMap<>();
+
+    private SolveRecorder recorder = SolveRecorder.NONE;
+    private SolveBudget budget = new SolveBudget();
+
+    private boolean timedOut;
+    private String winner;
+    private long assignments;
+    private long timeTaken;
+
+    /**
+     * Add a strategy to the portfolio.
+     *
+     * @param name The name reported if the strategy wins.
+     * @param strategy The strategy. Must not be shared with any other thread.
+     * @return This portfolio, for chaining.
+     */
+    public PortfolioSolver add(String name, GridStrategy strategy)
+    {
+        names.add(name);
+        strategies.add(strategy);
+
+        return this;
+    }
+
+    @Override
+    public char[] solve(final char[] cells)
+    {
+        char[] result = null;
+
+        long start = System.nanoTime();
+        recorder.solveStarted();
+
+        winner = null;
+        assignments = 0;
+        loserAssignments.clear();
+
+        // Cancelled once the race is decided, so the losers stop at their next budget check.
+        SolveBudget raceBudget = new SolveBudget(budget, 0, 0);
+        for (GridStrategy strategy : strategies) {
+            strategy.setBudget(raceBudget);
+        }
+
+        CompletionService<char[]> completionService = new ExecutorCompletionService<>(getPool());
+        CountDownLatch stopped = new CountDownLatch(strategies.size());
+
+        List<Racer> racers = new ArrayList<>(strategies.size());
+        List<Future<char[]>> futures = new ArrayList<>(strategies.size());
+        for (GridStrategy strategy : strategies) {
+            Racer racer = new Racer(strategy, cells, stopped);
+            racers.add(racer);
+            futures.add(completionService.submit(racer));
+        }
+
+        try {
+            // Every strategy is complete, so the first to finish without error or running out of
+            // budget is definitive.
+            for (int i = 0; i < futures.size() && winner == null; i++) {
+                Future<char[]> future = completionService.take();
+                try {
+                    char[] cellValues = future.get();
+
+                    int index = futures.indexOf(future);
+                    if (!strategies.get(index).isTimedOut()) {
+                        result = cellValues;
+                        winner = names.get(index);
+                        assignments = strategies.get(index).getAssignments();
+                    }
+                } catch (ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            raceBudget.cancel();
+
+            // A racer still queued behind the others on the pool never starts.
+            for (int i = 0; i < racers.size(); i++) {
+                if (racers.get(i).skip()) {
+                    futures.get(i).cancel(false);
+                    stopped.countDown();
+                }
+            }
+        }
+
+        try {
+            stopped.await(LOSER_STOP_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // A loser's counts are only safe to read once it has stopped. Every strategy checks the
+        // budget, so one still running is stuck between checks.
+        timedOut = false;
+        for (int i = 0; i < strategies.size(); i++) {
+            if (!names.get(i).equals(winner)) {
+                Racer racer = racers.get(i);
+                Long count = null;
+                if (racer.isSkipped()) {
+                    count = 0L;
+                } else if (racer.isStopped()) {
+                    count = strategies.get(i).getAssignments();
+                    timedOut |= winner == null && strategies.get(i).isTimedOut();
+                }
+                loserAssignments.put(names.get(i), count);
+            }
+        }
+
+        // Report the combined effort of a race which ran out of budget.
+        if (timedOut) {
+            for (Long loser : loserAssignments.values()) {
+                if (loser != null) {
+                    assignments += loser;
+                }
+            }
+        }
+
+        recorder.solveFinished();
+        timeTaken = (System.nanoTime() - start) / 1000000;
+
+        return result;
+    }
+
+    /** @return The name of the strategy which won the last race, or null if none finished. */
+    public String getWinner()
+    {
+        return winner;
+    }
+
+    /**
+     * @return The assignments each losing strategy had made when it stopped, 0 for a strategy
+     * which never started, or null for a strategy still running after it was cancelled.
+     */
+    public Map<String, Long> getLoserAssignments()
+    {
+        return loserAssignments;
+    }
+
+    @Override
+    public long getAssignments()
+    {
+        return assignments;
+    }
+
+    @Override
+    public long getTimeTaken()
+    {
+        return timeTaken;
+    }
+
+    /** Only the start and end of the race are recorded, as the strategies run concurrently. */
+    @Override
+    public void setRecorder(SolveRecorder recorder)
+    {
+        this.recorder = recorder;
+    }
+
+    /** Each strategy in the race is given a child of the budget, replacing its own. */
+    @Override
+    public void setBudget(SolveBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+
+    /**
+     * @return The pool shared by every race. It has a worker per core, so racers queue once there
+     * are more of them than cores, and losers still stopping hold up later races instead of
+     * adding to the threads running.
+     */
+    private static synchronized ThreadPoolExecutor getPool()
+    {
+        if (pool == null) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            ThreadFactory threadFactory = new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "PortfolioSolver");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+
+            pool = new ThreadPoolExecutor(threads, threads, IDLE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), threadFactory);
+            pool.allowCoreThreadTimeOut(true);
+        }
+
+        return pool;
+    }
+
+    /**
+     * One strategy's run in the race. Once the race is decided a racer which has not yet started
+     * is skipped, so it never runs.
+     */
+    private static class Racer implements Callable<char[]>
+    {
+        private static final int WAITING = 0;
+        private static final int RUNNING = 1;
+        private static final int STOPPED = 2;
+        private static final int SKIPPED = 3;
+
+        private final GridStrategy strategy;
+        private final char[] cells;
+        private final CountDownLatch stopped;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        private Racer(GridStrategy strategy, char[] cells, CountDownLatch stopped)
+        {
+            this.strategy = strategy;
+            this.cells = cells;
+            this.stopped = stopped;
+        }
+
+        @Override
+        public char[] call()
+        {
+            char[] result = null;
+
+            if (state.compareAndSet(WAITING, RUNNING)) {
+                try {
+                    result = strategy.solve(cells.clone());
+                } finally {
+                    // Publishes the strategy's counts to the thread which sees it stopped.
+                    state.set(STOPPED);
+                    stopped.countDown();
+                }
+            }
+
+            return result;
+        }
+
+        /** @return True if the racer had not started, and now never will. */
+        private boolean skip()
+        {
+            return state.compareAndSet(WAITING, SKIPPED);
+        }
+
+        private boolean isSkipped()
+        {
+            return state.get() == SKIPPED;
+        }
+
+        private boolean isStopped()
+        {
+            return state.get() == STOPPED;
+        }
+    }
+}
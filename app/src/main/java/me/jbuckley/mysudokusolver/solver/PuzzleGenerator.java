@@ -0,0 +1,285 @@
+package me.jbuckley.mysudokusolver.solver;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates puzzles with a unique solution by removing clues from a random solved grid, in a
+ * random order, for as long as the solution stays unique. Uniqueness is checked by searching
+ * for any solution with the removed clue's cell set to a different digit, which usually fails
+ * within a few assignments. Each puzzle is rated by the hardest technique the LogicEngine needs
+ * to solve it, or as needing search if logic alone cannot.
+ *
+ * From the command line, puzzles are generated across the worker threads and written one per
+ * line: the 81 cells, with '.' for an empty cell, then a space and the rating. The puzzle at
+ * each line depends only on the seed and line number, not on the number of threads.
+ *
+ * Usage: PuzzleGenerator output count [threads] [seed]
+ */
+public class PuzzleGenerator
+{
+    private static final int BLOCK_PUZZLES = 4 * 1024;
+
+    // Spreads consecutive puzzle numbers across the seeds of their random generators.
+    private static final long SEED_MIX = 0x9E3779B97F4A7C15L;
+
+    private final Bitboard board = new Bitboard();
+    private final LogicEngine engine = new LogicEngine();
+    private final int[] order = new int[Bitboard.CELLS];
+
+    private char[] solution;
+    private Technique rating;
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if (args.length < 2) {
+            System.err.println("Usage: PuzzleGenerator output count [threads] [seed]");
+            System.exit(1);
+        }
+
+        int count = Integer.parseInt(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            generateFile(args[0], count, seed, executor, threads);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Generate a puzzle.
+     *
+     * @param random The source of randomness for the solved grid and the removal order.
+     * @return The cell values of the puzzle. ' ' is an empty cell.
+     */
+    public char[] generate(Random random)
+    {
+        solution = randomSolution(random);
+        char[] result = solution.clone();
+
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            order[cell] = cell;
+        }
+        for (int i = Bitboard.CELLS - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+
+        for (int cell : order) {
+            char value = result[cell];
+            result[cell] = ' ';
+
+            if (hasOtherSolution(result, cell, value - '1')) {
+                result[cell] = value;
+            }
+        }
+
+        engine.load(result);
+        rating = engine.run() ? engine.getHardest() : null;
+
+        return result;
+    }
+
+    /** @return The solution of the last puzzle generated. */
+    public char[] getSolution()
+    {
+        return solution;
+    }
+
+    /**
+     * @return The hardest technique needed to solve the last puzzle generated, or null if logic
+     * alone cannot solve it.
+     */
+    public Technique getRating()
+    {
+        return rating;
+    }
+
+    /**
+     * Generate puzzles in blocks across the worker threads, writing them out in order.
+     *
+     * @param output The file to write the puzzles and their ratings to.
+     * @param count The number of puzzles.
+     * @param seed The seed all of the puzzles are generated from.
+     * @param executor The executor running the workers.
+     * @param threads The number of worker threads.
+     */
+    private static void generateFile(String output, int count, final long seed,
+                                     ExecutorService executor, int threads)
+            throws IOException, InterruptedException
+    {
+        long start = System.nanoTime();
+
+        final ThreadLocal<PuzzleGenerator> generators = new ThreadLocal<PuzzleGenerator>()
+        {
+            @Override
+            protected PuzzleGenerator initialValue()
+            {
+                return new PuzzleGenerator();
+            }
+        };
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(output), Charset.forName("US-ASCII")));
+        try {
+            final char[][] puzzles = new char[BLOCK_PUZZLES][];
+            final Technique[] ratings = new Technique[BLOCK_PUZZLES];
+
+            for (int blockStart = 0; blockStart < count; blockStart += BLOCK_PUZZLES) {
+                int total = Math.min(BLOCK_PUZZLES, count - blockStart);
+                int rangeSize = (total + threads - 1) / threads;
+
+                List<Future<Void>> futures = new ArrayList<>(threads);
+                for (int first = 0; first < total; first += rangeSize) {
+                    final int from = first;
+                    final int to = Math.min(total, first + rangeSize);
+                    final long number = blockStart;
+
+                    futures.add(executor.submit(new Callable<Void>()
+                    {
+                        @Override
+                        public Void call() throws Exception
+                        {
+                            PuzzleGenerator generator = generators.get();
+                            for (int i = from; i < to; i++) {
+                                Random random = new Random(seed ^ ((number + i) * SEED_MIX));
+                                puzzles[i] = generator.generate(random);
+                                ratings[i] = generator.getRating();
+                            }
+                            return null;
+                        }
+                    }));
+                }
+
+                try {
+                    for (Future<Void> future : futures) {
+                        future.get();
+                    }
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Failed to generate block", e.getCause());
+                }
+
+                for (int i = 0; i < total; i++) {
+                    writer.write(new String(puzzles[i]).replace(' ', '.'));
+                    writer.write(' ');
+                    writer.write(ratings[i] != null ? ratings[i].name() : "SEARCH");
+                    writer.write('\n');
+                }
+            }
+        } finally {
+            writer.close();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(count + " puzzles generated in " + String.format("%.2f", seconds)
+                + "s, " + String.format("%.0f", count / seconds) + " puzzles/second");
+    }
+
+    /**
+     * Fill an empty grid by search, trying the candidates of each cell in a random order.
+     *
+     * @return The solved cell values.
+     */
+    private char[] randomSolution(Random random)
+    {
+        board.load(new char[Bitboard.CELLS]);
+        fillRandomly(random);
+
+        return board.toCells();
+    }
+
+    /** @return True once the board has been completed. */
+    private boolean fillRandomly(Random random)
+    {
+        boolean result = false;
+
+        int cell = board.selectCell();
+        if (cell < 0) {
+            result = true;
+        } else {
+            int candidates = board.domains[cell];
+            while (candidates != 0 && !result) {
+                int bit = randomBit(candidates, random);
+                candidates ^= bit;
+
+                int checkpoint = board.checkpoint();
+                result = board.assign(cell, Integer.numberOfTrailingZeros(bit))
+                        && fillRandomly(random);
+                if (!result) {
+                    board.undo(checkpoint);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /** @return One of the set bits of the mask, chosen at random. */
+    private static int randomBit(int mask, Random random)
+    {
+        int result = mask & -mask;
+
+        for (int skip = random.nextInt(Integer.bitCount(mask)); skip > 0; skip--) {
+            mask ^= result;
+            result = mask & -mask;
+        }
+
+        return result;
+    }
+
+    /**
+     * Check whether the puzzle has a solution with a different digit in the cell.
+     *
+     * @param cells The puzzle, with the cell empty.
+     * @param cell The cell index.
+     * @param digit The zero based digit of the known solution in the cell.
+     * @return True if another solution exists, so the cell's clue cannot be removed.
+     */
+    private boolean hasOtherSolution(char[] cells, int cell, int digit)
+    {
+        return board.load(cells) && board.exclude(cell, digit) && findAny();
+    }
+
+    /** @return True if the board can be completed. */
+    private boolean findAny()
+    {
+        boolean result = false;
+
+        int cell = board.selectCell();
+        if (cell < 0) {
+            result = true;
+        } else {
+            int candidates = board.domains[cell];
+            while (candidates != 0 && !result) {
+                int bit = candidates & -candidates;
+                candidates ^= bit;
+
+                int checkpoint = board.checkpoint();
+                result = board.assign(cell, Integer.numberOfTrailingZeros(bit)) && findAny();
+                if (!result) {
+                    board.undo(checkpoint);
+                }
+            }
+        }
+
+        return result;
+    }
+}
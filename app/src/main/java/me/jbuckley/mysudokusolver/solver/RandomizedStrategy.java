@@ -0,0 +1,27 @@
+package me.jbuckley.mysudokusolver.solver;
+
+import java.util.Random;
+
+/**
+ * A strategy which can break ties in its ordering at random, so that solving the same puzzle
+ * again searches a different tree, and which can carry what it learned from one solve of a
+ * puzzle into the next.
+ */
+public interface RandomizedStrategy extends GridStrategy
+{
+    /**
+     * Set how later solves break ties between equally ranked cells.
+     *
+     * @param random The source of the choices, or null to always take the first cell.
+     */
+    void setRandom(Random random);
+
+    /**
+     * Solve the puzzle of the last solve again, keeping anything learned about it, such as
+     * constraint weights.
+     *
+     * @param cells The starting values of the Sudoku grid. ' ' is an empty cell.
+     * @return The solved cell values, or null if there is no solution.
+     */
+    char[] restart(char[] cells);
+}
@@ -0,0 +1,161 @@
+package me.jbuckley.mysudokusolver.solver;
+
+import java.util.Random;
+
+/**
+ * Runs a strategy with a cutoff on its assignments, restarting it with a larger cutoff each
+ * time the cutoff is reached. A backtracking search occasionally makes a bad choice near the
+ * root which takes far longer to refute than the rest of the search, and a restart with ties
+ * broken differently is likely to avoid it. The first run searches exactly as the strategy does
+ * on its own, so a puzzle solved within the first cutoff is unaffected. Later runs break ties at
+ * random, and keep anything the strategy has learned, such as constraint weights.
+ *
+ * The random choices are seeded afresh for each puzzle, so the result of a solve depends only on
+ * the puzzle.
+ */
+public class RestartSolver implements GridStrategy
+{
+    /** How the cutoff grows from one run to the next. */
+    public enum Policy
+    {
+        /** The unit times each term of the Luby sequence 1, 1, 2, 1, 1, 2, 4, 1, ... */
+        LUBY,
+        /** The unit times a constant factor for each run before. */
+        GEOMETRIC
+    }
+
+    private static final long DEFAULT_UNIT = 2048;
+    private static final double GEOMETRIC_FACTOR = 1.5;
+
+    private final RandomizedStrategy strategy;
+    private final Policy policy;
+    private final long unit;
+    private final long seed;
+    private final Random random = new Random();
+
+    private SolveRecorder recorder = SolveRecorder.NONE;
+    private SolveBudget budget = new SolveBudget();
+
+    private boolean timedOut;
+    private int restarts;
+    private long assignments;
+    private long timeTaken;
+
+    /**
+     * Create a new RestartSolver with the default cutoff unit.
+     *
+     * @param strategy The strategy to restart.
+     * @param policy How the cutoff grows.
+     */
+    public RestartSolver(RandomizedStrategy strategy, Policy policy)
+    {
+        this(strategy, policy, DEFAULT_UNIT, 0);
+    }
+
+    /**
+     * Create a new RestartSolver.
+     *
+     * @param strategy The strategy to restart.
+     * @param policy How the cutoff grows.
+     * @param unit The cutoff of the first run, in assignments.
+     * @param seed The seed of the random choices made for each puzzle.
+     */
+    public RestartSolver(RandomizedStrategy strategy, Policy policy, long unit, long seed)
+    {
+        this.strategy = strategy;
+        this.policy = policy;
+        this.unit = unit;
+        this.seed = seed;
+    }
+
+    @Override
+    public char[] solve(char[] cells)
+    {
+        char[] result = null;
+
+        long start = System.nanoTime();
+        recorder.solveStarted();
+
+        timedOut = false;
+        restarts = 0;
+        assignments = 0;
+        random.setSeed(seed);
+        strategy.setRandom(null);
+
+        boolean finished = false;
+        while (!finished) {
+            // The parent budget is checked on each run as well as the cutoff.
+            strategy.setBudget(new SolveBudget(budget, 0, cutoff(restarts)));
+            char[] solution = restarts == 0 ? strategy.solve(cells) : strategy.restart(cells);
+            assignments += strategy.getAssignments();
+
+            if (!strategy.isTimedOut()) {
+                result = solution;
+                finished = true;
+            } else if (budget.isExhausted(assignments)) {
+                timedOut = true;
+                finished = true;
+            } else {
+                restarts++;
+                strategy.setRandom(random);
+            }
+        }
+
+        recorder.solveFinished();
+        timeTaken = (System.nanoTime() - start) / 1000000;
+
+        return result;
+    }
+
+    /** @return The assignment cutoff of the run after the given number of restarts. */
+    private long cutoff(int run)
+    {
+        long result;
+
+        if (policy == Policy.LUBY) {
+            result = unit * CdclEngine.luby(run);
+        } else {
+            result = (long) (unit * Math.pow(GEOMETRIC_FACTOR, run));
+        }
+
+        return result;
+    }
+
+    /** @return The number of times the last solve was restarted. */
+    public int getRestarts()
+    {
+        return restarts;
+    }
+
+    /** @return The assignments made by every run of the last solve. */
+    @Override
+    public long getAssignments()
+    {
+        return assignments;
+    }
+
+    @Override
+    public long getTimeTaken()
+    {
+        return timeTaken;
+    }
+
+    /** Each run starts the search again, so only the start and end of each solve are recorded. */
+    @Override
+    public void setRecorder(SolveRecorder recorder)
+    {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void setBudget(SolveBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+}
@@ -0,0 +1,159 @@
+package me.jbuckley.mysudokusolver.solver;
+
+/**
+ * Solves a grid of any box size up to 25x25 as a SAT problem with a CdclEngine. There is a
+ * variable for each digit of each cell, 729 for a 9x9 grid, and exactly one variable must be true
+ * for each cell, and for each digit within each row, column and box. Each exactly-one constraint
+ * is an at-least-one clause plus an at-most-one clause for every pair of its variables. The
+ * clauses are built once, with the givens assumed for each solve, and the clauses learned from
+ * one puzzle are not carried over to the next.
+ */
+public class SatSolver implements GridStrategy
+{
+    private final CdclEngine engine;
+    private final int size;
+    private final int cells;
+
+    private SolveRecorder recorder = SolveRecorder.NONE;
+    private SolveBudget budget = new SolveBudget();
+
+    private boolean timedOut;
+    private long assignments;
+    private long timeTaken;
+
+    /** Create a new SatSolver for standard 9x9 grids. */
+    public SatSolver()
+    {
+        this(3);
+    }
+
+    /**
+     * Create a new SatSolver.
+     *
+     * @param boxSize The width and height of each box, from 2 to 5. 3 is a standard 9x9 grid.
+     */
+    public SatSolver(int boxSize)
+    {
+        int[][] units = new SizedBitboard(boxSize).units;
+
+        this.size = boxSize * boxSize;
+        this.cells = size * size;
+        this.engine = new CdclEngine(cells * size);
+
+        int[] literals = new int[size];
+        for (int cell = 0; cell < cells; cell++) {
+            for (int digit = 0; digit < size; digit++) {
+                literals[digit] = CdclEngine.positive(cell * size + digit);
+            }
+            addExactlyOne(literals);
+        }
+
+        for (int[] unit : units) {
+            for (int digit = 0; digit < size; digit++) {
+                for (int i = 0; i < size; i++) {
+                    literals[i] = CdclEngine.positive(unit[i] * size + digit);
+                }
+                addExactlyOne(literals);
+            }
+        }
+    }
+
+    /**
+     * Attempt to solve the puzzle.
+     *
+     * @param cells The starting values of the grid, one character per cell. '1'-'9' then 'A'-'P'
+     * are digits, and any other character is an empty cell.
+     * @return The solved cell values, or null if there is no solution.
+     */
+    @Override
+    public char[] solve(char[] cells)
+    {
+        char[] result = null;
+
+        long start = System.nanoTime();
+        recorder.solveStarted();
+
+        engine.reset();
+        for (int cell = 0; cell < this.cells; cell++) {
+            int value = SizedBitboard.toValue(cells[cell]);
+            if (value > 0 && value <= size) {
+                engine.assume(CdclEngine.positive(cell * size + value - 1));
+            }
+        }
+
+        if (engine.solve(budget)) {
+            result = new char[this.cells];
+            for (int cell = 0; cell < this.cells; cell++) {
+                for (int digit = 0; digit < size; digit++) {
+                    if (engine.isTrue(cell * size + digit)) {
+                        result[cell] = SizedBitboard.toChar(digit + 1);
+                    }
+                }
+            }
+        }
+
+        timedOut = engine.isTimedOut();
+        assignments = engine.getDecisions();
+
+        recorder.solveFinished();
+        timeTaken = (System.nanoTime() - start) / 1000000;
+
+        return result;
+    }
+
+    /** @return The number of cells in each row, column and box of the grid. */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /** @return The number of conflicts the last solve learned a clause from. */
+    public long getConflicts()
+    {
+        return engine.getConflicts();
+    }
+
+    /** Add the clauses making exactly one of the literals true. */
+    private void addExactlyOne(int[] literals)
+    {
+        engine.addClause(literals);
+
+        for (int i = 0; i < literals.length; i++) {
+            for (int j = i + 1; j < literals.length; j++) {
+                engine.addClause(literals[i] ^ 1, literals[j] ^ 1);
+            }
+        }
+    }
+
+    /** @return The decisions made by the last solve. Propagated values are not counted. */
+    @Override
+    public long getAssignments()
+    {
+        return assignments;
+    }
+
+    @Override
+    public long getTimeTaken()
+    {
+        return timeTaken;
+    }
+
+    /** The engine reports no search events, so only the start and end are recorded. */
+    @Override
+    public void setRecorder(SolveRecorder recorder)
+    {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void setBudget(SolveBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+}
@@ -0,0 +1,355 @@
+package me.jbuckley.mysudokusolver.solver;
+
+/**
+ * Search state for a grid of any box size, held in primitive arrays like Bitboard. A grid with
+ * boxes of n by n cells has n * n digits, so with boxes of up to 5 by 5 every domain fits an int
+ * mask. As well as propagating naked singles on each assignment, hidden singles can be found unit
+ * by unit, which larger grids depend on far more than 9x9 ones.
+ *
+ * Cell values are written as '1'-'9' followed by 'A'-'P' for the digits 10 to 25.
+ */
+final class SizedBitboard
+{
+    static final int MAX_BOX_SIZE = 5;
+
+    // Set on a trail cell entry when the cell was assigned, rather than only having its domain
+    // reduced.
+    private static final int ASSIGNED = 0x80000000;
+
+    final int boxSize;
+    final int size;
+    final int cells;
+    final int all;
+
+    // Rows, then columns, then boxes.
+    final int[][] units;
+    final int[][] peers;
+
+    final int[] domains;
+    final int[] values;
+
+    private final int[] trailCells;
+    private final int[] trailDomains;
+    private final int[] singles;
+
+    private int trailSize;
+    private int assignedCells;
+    private long assignments;
+
+    /**
+     * Create a new SizedBitboard.
+     *
+     * @param boxSize The width and height of each box, from 2 to 5. 3 is a standard 9x9 grid.
+     */
+    SizedBitboard(int boxSize)
+    {
+        if (boxSize < 2 || boxSize > MAX_BOX_SIZE) {
+            throw new IllegalArgumentException("Unsupported box size: " + boxSize);
+        }
+
+        this.boxSize = boxSize;
+        this.size = boxSize * boxSize;
+        this.cells = size * size;
+        this.all = (1 << size) - 1;
+
+        units = new int[3 * size][size];
+        for (int i = 0; i < size; i++) {
+            int boxStart = (i / boxSize) * boxSize * size + (i % boxSize) * boxSize;
+            for (int j = 0; j < size; j++) {
+                units[i][j] = i * size + j;
+                units[size + i][j] = j * size + i;
+                units[2 * size + i][j] = boxStart + (j / boxSize) * size + j % boxSize;
+            }
+        }
+
+        peers = new int[cells][3 * size - 2 * boxSize - 1];
+        for (int cell = 0; cell < cells; cell++) {
+            int row = cell / size;
+            int col = cell % size;
+            int box = (row / boxSize) * boxSize + col / boxSize;
+
+            int total = 0;
+            for (int other = 0; other < cells; other++) {
+                int otherRow = other / size;
+                int otherCol = other % size;
+                int otherBox = (otherRow / boxSize) * boxSize + otherCol / boxSize;
+
+                if (other != cell && (otherRow == row || otherCol == col || otherBox == box)) {
+                    peers[cell][total++] = other;
+                }
+            }
+        }
+
+        domains = new int[cells];
+        values = new int[cells];
+
+        // A cell's domain can shrink at most size - 1 times, plus one entry when it is assigned.
+        trailCells = new int[cells * size];
+        trailDomains = new int[cells * size];
+        singles = new int[cells];
+    }
+
+    /**
+     * Convert a cell character to its value.
+     *
+     * @param c The cell character.
+     * @return The value from 1, or 0 if the character is not a digit.
+     */
+    static int toValue(char c)
+    {
+        int result = 0;
+
+        if (c >= '1' && c <= '9') {
+            result = c - '0';
+        } else if (c >= 'A' && c <= 'P') {
+            result = c - 'A' + 10;
+        }
+
+        return result;
+    }
+
+    /**
+     * Convert a value to its cell character.
+     *
+     * @param value The value from 1, or 0 for an empty cell.
+     * @return The cell character. ' ' is an empty cell.
+     */
+    static char toChar(int value)
+    {
+        char result = ' ';
+
+        if (value >= 1 && value <= 9) {
+            result = (char) ('0' + value);
+        } else if (value >= 10) {
+            result = (char) ('A' + value - 10);
+        }
+
+        return result;
+    }
+
+    /**
+     * Reset the board and place the given cell values, propagating each one.
+     *
+     * @param cellValues The starting values of the grid, one character per cell. Characters
+     * which are not digits of this grid are empty cells.
+     * @return False if the given values contradict each other.
+     */
+    boolean load(char[] cellValues)
+    {
+        boolean result = true;
+
+        for (int cell = 0; cell < cells; cell++) {
+            domains[cell] = all;
+            values[cell] = 0;
+        }
+        trailSize = 0;
+        assignedCells = 0;
+
+        for (int cell = 0; cell < cells && result; cell++) {
+            int value = toValue(cellValues[cell]);
+            if (value >= 1 && value <= size && values[cell] != value) {
+                result = assign(cell, value - 1);
+            }
+        }
+
+        assignments = 0;
+
+        return result;
+    }
+
+    /**
+     * Assign a digit to a cell, removing it from the domains of the cell's peers and assigning
+     * any peer left with a single candidate.
+     *
+     * @param cell The cell index.
+     * @param digit The zero based digit.
+     * @return False if propagation wiped out a domain. The caller should undo to its checkpoint.
+     */
+    boolean assign(int cell, int digit)
+    {
+        int bit = 1 << digit;
+        boolean result = (domains[cell] & bit) != 0;
+
+        if (result && domains[cell] != bit) {
+            push(cell, domains[cell]);
+            domains[cell] = bit;
+        }
+
+        int head = 0;
+        int tail = 0;
+        singles[tail++] = cell;
+
+        while (head < tail && result) {
+            int c = singles[head++];
+            int single = domains[c];
+
+            push(c | ASSIGNED, single);
+            values[c] = Integer.numberOfTrailingZeros(single) + 1;
+            assignedCells++;
+            assignments++;
+
+            int[] cellPeers = peers[c];
+            for (int i = 0; i < cellPeers.length && result; i++) {
+                int peer = cellPeers[i];
+                int domain = domains[peer];
+
+                if ((domain & single) != 0) {
+                    // Removing the last candidate wipes out the peer's domain.
+                    result = domain != single;
+
+                    if (result) {
+                        push(peer, domain);
+                        domain ^= single;
+                        domains[peer] = domain;
+
+                        if ((domain & (domain - 1)) == 0) {
+                            singles[tail++] = peer;
+                        }
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Assign every digit which has only one possible cell left in some unit, repeating until
+     * none remain.
+     *
+     * @return False if a digit has no possible cell in some unit, or an assignment wiped out a
+     * domain. The caller should undo to its checkpoint.
+     */
+    boolean assignHiddenSingles()
+    {
+        boolean result = true;
+        boolean changed = true;
+
+        while (changed && result) {
+            changed = false;
+
+            for (int u = 0; u < units.length && result; u++) {
+                int[] unit = units[u];
+
+                int once = 0;
+                int twice = 0;
+                for (int cell : unit) {
+                    int domain = domains[cell];
+                    twice |= once & domain;
+                    once |= domain;
+                }
+
+                result = once == all;
+
+                // Assignments only shrink domains, so each digit still has at most one cell.
+                int hidden = once & ~twice;
+                while (hidden != 0 && result) {
+                    int bit = hidden & -hidden;
+                    hidden ^= bit;
+
+                    int cell = findCell(unit, bit);
+                    if (cell < 0) {
+                        result = false;
+                    } else if (values[cell] == 0) {
+                        result = assign(cell, Integer.numberOfTrailingZeros(bit));
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /** @return The cell of the unit with the candidate bit, or -1 if there is none. */
+    private int findCell(int[] unit, int bit)
+    {
+        int result = -1;
+
+        for (int i = 0; i < unit.length && result < 0; i++) {
+            if ((domains[unit[i]] & bit) != 0) {
+                result = unit[i];
+            }
+        }
+
+        return result;
+    }
+
+    /** Push the old domain of a cell onto the trail. */
+    private void push(int cellEntry, int domain)
+    {
+        trailCells[trailSize] = cellEntry;
+        trailDomains[trailSize] = domain;
+        trailSize++;
+    }
+
+    /** @return The current trail position, to later pass to undo. */
+    int checkpoint()
+    {
+        return trailSize;
+    }
+
+    /**
+     * Undo every change made since the checkpoint was taken.
+     *
+     * @param checkpoint A trail position returned by checkpoint.
+     */
+    void undo(int checkpoint)
+    {
+        while (trailSize > checkpoint) {
+            trailSize--;
+            int entry = trailCells[trailSize];
+            int cell = entry & ~ASSIGNED;
+
+            if ((entry & ASSIGNED) != 0) {
+                values[cell] = 0;
+                assignedCells--;
+            }
+
+            domains[cell] = trailDomains[trailSize];
+        }
+    }
+
+    /**
+     * Find the unassigned cell with the fewest remaining candidates.
+     *
+     * @return The cell index, or -1 if every cell is assigned.
+     */
+    int selectCell()
+    {
+        int result = -1;
+        int smallest = size + 1;
+
+        if (assignedCells < cells) {
+            for (int cell = 0; cell < cells && smallest > 2; cell++) {
+                if (values[cell] == 0) {
+                    int domainSize = Integer.bitCount(domains[cell]);
+                    if (domainSize < smallest) {
+                        smallest = domainSize;
+                        result = cell;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /** @return The number of assignments made since the board was loaded. */
+    long getAssignments()
+    {
+        return assignments;
+    }
+
+    /** @return The assigned cell values as characters. ' ' is an unassigned cell. */
+    char[] toCells()
+    {
+        char[] result = new char[cells];
+
+        for (int cell = 0; cell < cells; cell++) {
+            result[cell] = toChar(values[cell]);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,130 @@
+package me.jbuckley.mysudokusolver.solver;
+
+/**
+ * Forward checking search over bitmask domains for grids of any box size up to 25x25, using a
+ * SizedBitboard. Hidden singles are assigned after every decision, as without them the search
+ * on 16x16 and 25x25 grids branches far more than on 9x9.
+ */
+public class SizedBitboardSolver implements GridStrategy
+{
+    private final SizedBitboard board;
+
+    private SolveRecorder recorder = SolveRecorder.NONE;
+    private SolveBudget budget = new SolveBudget();
+
+    private boolean timedOut;
+    private long assignments;
+    private long timeTaken;
+
+    /**
+     * Create a new SizedBitboardSolver.
+     *
+     * @param boxSize The width and height of each box, from 2 to 5. 3 is a standard 9x9 grid.
+     */
+    public SizedBitboardSolver(int boxSize)
+    {
+        this.board = new SizedBitboard(boxSize);
+    }
+
+    /**
+     * Attempt to solve the puzzle.
+     *
+     * @param cells The starting values of the grid, one character per cell. '1'-'9' then 'A'-'P'
+     * are digits, and any other character is an empty cell.
+     * @return The solved cell values, or null if there is no solution.
+     */
+    @Override
+    public char[] solve(char[] cells)
+    {
+        char[] result = null;
+
+        long start = System.nanoTime();
+        recorder.solveStarted();
+        timedOut = false;
+
+        if (board.load(cells) && board.assignHiddenSingles() && search(0)) {
+            result = board.toCells();
+        }
+
+        recorder.solveFinished();
+        assignments = board.getAssignments();
+        timeTaken = (System.nanoTime() - start) / 1000000;
+
+        return result;
+    }
+
+    /** @return The number of cells in each row, column and box of the grid. */
+    public int getSize()
+    {
+        return board.size;
+    }
+
+    /**
+     * Assign the most constrained cell each of its candidates in turn, backtracking on failure.
+     *
+     * @param depth The number of decisions above this one.
+     * @return True if the board has been completed.
+     */
+    private boolean search(int depth)
+    {
+        boolean result = false;
+
+        int cell = board.selectCell();
+        if (cell < 0) {
+            result = true;
+        } else {
+            int candidates = board.domains[cell];
+            while (candidates != 0 && !result && !timedOut) {
+                int bit = candidates & -candidates;
+                candidates ^= bit;
+
+                int checkpoint = board.checkpoint();
+                recorder.nodeVisited(depth);
+                timedOut = budget.isExhausted(board.getAssignments());
+
+                recorder.propagationStarted();
+                boolean consistent = board.assign(cell, Integer.numberOfTrailingZeros(bit))
+                        && board.assignHiddenSingles();
+                recorder.propagationFinished(!consistent);
+
+                result = consistent && !timedOut && search(depth + 1);
+                if (!result) {
+                    board.undo(checkpoint);
+                    recorder.backtracked();
+                }
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public long getAssignments()
+    {
+        return assignments;
+    }
+
+    @Override
+    public long getTimeTaken()
+    {
+        return timeTaken;
+    }
+
+    @Override
+    public void setRecorder(SolveRecorder recorder)
+    {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void setBudget(SolveBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+}
@@ -0,0 +1,88 @@
+package me.jbuckley.mysudokusolver.solver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of solutions, keyed by the canonical form of the puzzle so that any
+ * puzzle isomorphic to a cached one is answered by transforming the cached solution.
+ */
+public class SolutionCache
+{
+    // Each entry holds the 81 character key and canonical solution.
+    private static final int ENTRY_BYTES = 2 * Bitboard.CELLS * 2;
+
+    private final Map<String, char[]> entries;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Create a new SolutionCache.
+     *
+     * @param maxBytes The approximate memory the cached puzzles and solutions may take up.
+     */
+    public SolutionCache(long maxBytes)
+    {
+        final int maxEntries = (int) Math.max(1, maxBytes / ENTRY_BYTES);
+
+        entries = new LinkedHashMap<String, char[]>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, char[]> eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Look up the solution of a puzzle.
+     *
+     * @param form The canonical form of the puzzle.
+     * @return The solved cell values of the puzzle, or null if it is not cached.
+     */
+    public synchronized char[] get(CanonicalForm form)
+    {
+        char[] result = null;
+
+        char[] canonicalSolution = entries.get(form.getKey());
+        if (canonicalSolution != null) {
+            hits++;
+            result = form.fromCanonical(canonicalSolution);
+        } else {
+            misses++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Cache the solution of a puzzle.
+     *
+     * @param form The canonical form of the puzzle.
+     * @param solution The solved cell values of the puzzle.
+     */
+    public synchronized void put(CanonicalForm form, char[] solution)
+    {
+        entries.put(form.getKey(), form.toCanonical(solution));
+    }
+
+    /** @return The number of lookups answered from the cache. */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /** @return The number of lookups not found in the cache. */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /** @return The number of cached solutions. */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+}
@@ -0,0 +1,285 @@
+package me.jbuckley.mysudokusolver.solver;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Enumerates the solutions of a puzzle across a fixed pool of worker threads. Each task drains a
+ * SolutionIterator, splitting off half of its untried branches as new tasks while there are too
+ * few queued for the idle workers to take. A task splits before it starts searching, and again
+ * at intervals during the search, so the work spreads across the workers even when solutions
+ * are sparse or the first takes a long time to reach. Solutions are passed to the
+ * callback as they are found, in no particular order, so only the current branch of each task is
+ * held in memory. ForkJoinPool needs API 21, so the pool is a ThreadPoolExecutor whose workers
+ * stop once they have been idle for a while.
+ *
+ * From the command line, the solutions of a puzzle are written to a file one per line.
+ *
+ * Usage: SolutionEnumerator puzzle output [limit] [threads]
+ */
+public class SolutionEnumerator
+{
+    // Tasks kept queued for each worker to take, before the running tasks stop splitting.
+    private static final int SURPLUS_TASKS = 2;
+    private static final long IDLE_SECONDS = 1;
+
+    /** Receives the solutions of an enumeration. */
+    public interface Callback
+    {
+        /**
+         * Called from the worker threads, so must be thread safe.
+         *
+         * @param cells The solved cell values.
+         * @return False to stop the enumeration.
+         */
+        boolean onSolution(char[] cells);
+    }
+
+    private final ThreadPoolExecutor pool;
+    private final int parallelism;
+
+    // The tasks queued or running, which enumerate waits on until none are left.
+    private final AtomicInteger tasks = new AtomicInteger();
+    private final Object finished = new Object();
+
+    private final AtomicLong found = new AtomicLong();
+    private final AtomicLong totalAssignments = new AtomicLong();
+
+    private SolveBudget budget = new SolveBudget();
+    private SolveBudget stop;
+    private Callback callback;
+    private long limit;
+
+    private volatile boolean stopped;
+    private volatile boolean timedOut;
+    private long assignments;
+
+    /**
+     * Write the solutions of a puzzle to a file.
+     *
+     * @param args The puzzle as 81 characters with any non-digit an empty cell, the output file,
+     * then optionally the solutions at which to stop and the number of threads.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2) {
+            System.err.println("Usage: SolutionEnumerator puzzle output [limit] [threads]");
+            System.exit(1);
+        }
+
+        long limit = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(args[1]), Charset.forName("US-ASCII")));
+        final IOException[] failure = new IOException[1];
+
+        long start = System.nanoTime();
+        long solutions;
+        try {
+            solutions = new SolutionEnumerator(threads).enumerate(args[0].toCharArray(), limit,
+                    new Callback()
+                    {
+                        @Override
+                        public boolean onSolution(char[] cells)
+                        {
+                            boolean result = true;
+
+                            synchronized (writer) {
+                                try {
+                                    writer.write(cells);
+                                    writer.write('\n');
+                                } catch (IOException e) {
+                                    failure[0] = e;
+                                    result = false;
+                                }
+                            }
+
+                            return result;
+                        }
+                    });
+        } finally {
+            writer.close();
+        }
+
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(solutions + " solutions in " + String.format("%.2f", seconds) + "s");
+    }
+
+    /** Create a new SolutionEnumerator using every available core. */
+    public SolutionEnumerator()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a new SolutionEnumerator.
+     *
+     * @param parallelism The number of worker threads.
+     */
+    public SolutionEnumerator(int parallelism)
+    {
+        ThreadFactory threadFactory = new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "SolutionEnumerator");
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+
+        this.pool = new ThreadPoolExecutor(parallelism, parallelism, IDLE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), threadFactory);
+        this.pool.allowCoreThreadTimeOut(true);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Find the solutions of a puzzle, passing each to the callback until the limit is reached,
+     * the callback returns false or the budget runs out.
+     *
+     * @param cells The starting values of the Sudoku grid. ' ' is an empty cell.
+     * @param limit The number of solutions at which to stop, or 0 for no limit.
+     * @param callback Receives each solution.
+     * @return The number of solutions passed to the callback.
+     */
+    public long enumerate(char[] cells, long limit, Callback callback)
+    {
+        this.callback = callback;
+        this.limit = limit > 0 ? limit : Long.MAX_VALUE;
+        this.stop = new SolveBudget(budget, 0, 0);
+
+        found.set(0);
+        totalAssignments.set(0);
+        stopped = false;
+        timedOut = false;
+
+        SolutionIterator iterator = new SolutionIterator(cells);
+        iterator.setBudget(stop);
+        tasks.set(1);
+        pool.execute(new EnumerateTask(iterator));
+
+        // An interrupt stops the tasks, but they are still waited for.
+        boolean interrupted = false;
+        synchronized (finished) {
+            while (tasks.get() > 0) {
+                try {
+                    finished.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    stopped = true;
+                    stop.cancel();
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        assignments = totalAssignments.get();
+
+        return Math.min(found.get(), this.limit);
+    }
+
+    /**
+     * Limit the enumeration. The assignment limit applies to each task's iterator separately.
+     *
+     * @param budget The budget for each enumeration.
+     */
+    public void setBudget(SolveBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    /** @return True if the budget ran out before every solution was found. */
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+
+    /** @return The assignments tried by every task of the last enumeration. */
+    public long getAssignments()
+    {
+        return assignments;
+    }
+
+    /**
+     * Pass a solution to the callback if the limit has not been reached, and stop every task
+     * once it has or the callback asks to stop.
+     */
+    private void offerSolution(char[] solution)
+    {
+        if (!stopped) {
+            long number = found.incrementAndGet();
+
+            if (number <= limit && (!callback.onSolution(solution) || number == limit)) {
+                stopped = true;
+                stop.cancel();
+            }
+        }
+    }
+
+    /** Enumeration of the solutions of one iterator, which splits as workers become idle. */
+    private class EnumerateTask implements Runnable, SolutionIterator.Splitter
+    {
+        private final SolutionIterator iterator;
+
+        private EnumerateTask(SolutionIterator iterator)
+        {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                onSearching(iterator);
+                iterator.setSplitter(this);
+
+                while (!stopped && iterator.hasNext()) {
+                    offerSolution(iterator.next());
+                }
+
+                if (iterator.isTimedOut() && !stopped) {
+                    timedOut = true;
+                }
+                totalAssignments.addAndGet(iterator.getAssignments());
+            } finally {
+                if (tasks.decrementAndGet() == 0) {
+                    synchronized (finished) {
+                        finished.notifyAll();
+                    }
+                }
+            }
+        }
+
+        /** Split off tasks while too few are queued, unless the enumeration has stopped. */
+        @Override
+        public void onSearching(SolutionIterator iterator)
+        {
+            SolutionIterator split;
+            while (!stopped && pool.getQueue().size() < SURPLUS_TASKS * parallelism
+                    && (split = iterator.trySplit()) != null) {
+                tasks.incrementAndGet();
+                pool.execute(new EnumerateTask(split));
+            }
+        }
+    }
+}
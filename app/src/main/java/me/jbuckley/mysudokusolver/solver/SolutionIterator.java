@@ -0,0 +1,269 @@
+package me.jbuckley.mysudokusolver.solver;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Yields the solutions of a puzzle lazily, one at a time, in the order BitboardSolver searches
+ * them. The search is an explicit stack of branching cells over a single Bitboard, so memory
+ * does not grow with the number of solutions and the search only runs as far as the solutions
+ * asked for. Solutions can be taken until enough have been seen, counted up to a limit or
+ * written out as they are found.
+ *
+ * trySplit hands half of the untried branches to a new iterator, in the manner of a
+ * Spliterator, so that separate threads can enumerate the two halves. A Splitter can be given the
+ * iterator at intervals during the search, so that work is split off long before a solution.
+ */
+public class SolutionIterator implements Iterator<char[]>
+{
+    // Assignments between the calls to the splitter during a search.
+    private static final long SPLIT_INTERVAL = 64;
+
+    /** Given the iterator at intervals during its search, while it is free to be split. */
+    public interface Splitter
+    {
+        /**
+         * Called from the thread advancing the iterator.
+         *
+         * @param iterator The iterator, which trySplit may be called on.
+         */
+        void onSearching(SolutionIterator iterator);
+    }
+
+    private final Bitboard board = new Bitboard();
+    private final char[] givens;
+
+    // The branching cells of the search, with the candidates not yet tried at each.
+    private final int[] cells = new int[Bitboard.CELLS];
+    private final int[] candidates = new int[Bitboard.CELLS];
+    private final int[] checkpoints = new int[Bitboard.CELLS];
+    private int depth;
+
+    private SolveBudget budget = new SolveBudget();
+    private Splitter splitter;
+    private long nextSplit;
+
+    private char[] next;
+    private boolean started;
+    private boolean finished;
+    private boolean timedOut;
+    private long assignments;
+
+    /**
+     * Create a new SolutionIterator.
+     *
+     * @param cells The starting values of the Sudoku grid. ' ' is an empty cell.
+     */
+    public SolutionIterator(char[] cells)
+    {
+        this.givens = cells.clone();
+        this.finished = !board.load(givens);
+    }
+
+    /**
+     * Create an iterator over the solutions below one branching cell, split from another.
+     *
+     * @param givens The starting values with the decisions above the cell added.
+     * @param cell The branching cell.
+     * @param candidates The candidates of the cell to try.
+     */
+    private SolutionIterator(char[] givens, int cell, int candidates)
+    {
+        this.givens = givens;
+        this.finished = !board.load(givens);
+
+        this.cells[0] = cell;
+        this.candidates[0] = candidates;
+        this.checkpoints[0] = board.checkpoint();
+        this.depth = 1;
+        this.started = true;
+    }
+
+    /**
+     * Limit the search. Once the budget is exhausted no more solutions are returned.
+     *
+     * @param budget The budget for the whole enumeration.
+     */
+    public void setBudget(SolveBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    /**
+     * Give the iterator to a splitter at intervals during later searches.
+     *
+     * @param splitter The splitter, or null for none.
+     */
+    public void setSplitter(Splitter splitter)
+    {
+        this.splitter = splitter;
+        this.nextSplit = assignments + SPLIT_INTERVAL;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (next == null && !finished) {
+            next = advance();
+        }
+
+        return next != null;
+    }
+
+    @Override
+    public char[] next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        char[] result = next;
+        next = null;
+
+        return result;
+    }
+
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Split off the later half of the untried candidates of the shallowest branching cell that
+     * has any. Together this iterator and the one returned yield the remaining solutions, this
+     * one's before the other's in the sequential order. Before the search has started, the first
+     * branching cell is chosen so that its candidates can be split straight away.
+     *
+     * @return An iterator over the solutions split off, or null if there are no branches to split
+     * without leaving this iterator with none.
+     */
+    public SolutionIterator trySplit()
+    {
+        SolutionIterator result = null;
+
+        if (!started && !finished) {
+            int cell = board.selectCell();
+            if (cell >= 0) {
+                pushCell(cell);
+                started = true;
+            }
+        }
+
+        int level = 0;
+        while (level < depth && candidates[level] == 0) {
+            level++;
+        }
+
+        // A last candidate is only handed over while a branch below it is left to search, so two
+        // iterators cannot keep handing the same one back and forth.
+        if (level < depth && !finished
+                && (level < depth - 1 || Integer.bitCount(candidates[level]) > 1)) {
+            int split = candidates[level];
+            for (int keep = Integer.bitCount(split) / 2; keep > 0; keep--) {
+                split &= split - 1;
+            }
+            candidates[level] ^= split;
+
+            // The decisions above the level are the values this board holds for their cells.
+            char[] prefix = givens.clone();
+            for (int i = 0; i < level; i++) {
+                prefix[cells[i]] = (char) ('0' + board.values[cells[i]]);
+            }
+
+            result = new SolutionIterator(prefix, cells[level], split);
+            result.setBudget(budget);
+        }
+
+        return result;
+    }
+
+    /** @return True if the budget ran out before every solution was found. */
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+
+    /** @return The assignments tried so far, not counting propagation. */
+    public long getAssignments()
+    {
+        return assignments;
+    }
+
+    /**
+     * Continue the search to the next solution. The first call branches from the loaded board,
+     * and later ones resume from the previous solution's branch.
+     *
+     * @return The solved cell values, or null if there are no more solutions.
+     */
+    private char[] advance()
+    {
+        char[] result = null;
+
+        boolean branch = !started;
+        started = true;
+
+        while (result == null && !finished) {
+            if (splitter != null && assignments >= nextSplit) {
+                nextSplit = assignments + SPLIT_INTERVAL;
+                splitter.onSearching(this);
+            }
+
+            if (branch) {
+                int cell = board.selectCell();
+                if (cell < 0) {
+                    result = board.toCells();
+                } else {
+                    pushCell(cell);
+                }
+            }
+
+            if (result == null) {
+                branch = tryCandidate();
+            }
+        }
+
+        return result;
+    }
+
+    /** Make the cell the deepest branching cell, with every candidate left to try. */
+    private void pushCell(int cell)
+    {
+        cells[depth] = cell;
+        candidates[depth] = board.domains[cell];
+        checkpoints[depth] = board.checkpoint();
+        depth++;
+    }
+
+    /**
+     * Undo back to the deepest branching cell with a candidate left and assign it the next one.
+     *
+     * @return True if the assignment was consistent, so the search should branch below it.
+     */
+    private boolean tryCandidate()
+    {
+        boolean result = false;
+
+        while (depth > 0 && candidates[depth - 1] == 0) {
+            depth--;
+            board.undo(checkpoints[depth]);
+        }
+
+        if (depth == 0) {
+            finished = true;
+        } else {
+            int level = depth - 1;
+            int bit = candidates[level] & -candidates[level];
+            candidates[level] ^= bit;
+
+            board.undo(checkpoints[level]);
+            assignments++;
+            timedOut = budget.isExhausted(assignments);
+            finished = timedOut;
+
+            result = !timedOut && board.assign(cells[level], Integer.numberOfTrailingZeros(bit));
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,72 @@
+package me.jbuckley.mysudokusolver.solver;
+
+/**
+ * Limits on how long a solve may run, checked cooperatively by the strategies as they search. A
+ * budget runs out once its time limit or assignment limit is reached, or once it or its parent
+ * has been cancelled from another thread.
+ */
+public class SolveBudget
+{
+    private final SolveBudget parent;
+    private final long deadline;
+    private final long maxAssignments;
+
+    private volatile boolean cancelled;
+
+    /** Create an unlimited budget, which only runs out if cancelled. */
+    public SolveBudget()
+    {
+        this(null, 0, 0);
+    }
+
+    /**
+     * Create a new SolveBudget, with its time limit starting now.
+     *
+     * @param timeLimit The time limit in milliseconds, or 0 for no limit.
+     * @param maxAssignments The assignment limit, or 0 for no limit.
+     */
+    public SolveBudget(long timeLimit, long maxAssignments)
+    {
+        this(null, timeLimit, maxAssignments);
+    }
+
+    /**
+     * Create a new SolveBudget which also runs out when its parent does. The assignments of the
+     * solve are checked against the limits of both.
+     *
+     * @param parent The parent budget.
+     * @param timeLimit The time limit in milliseconds, or 0 for no limit.
+     * @param maxAssignments The assignment limit, or 0 for no limit.
+     */
+    public SolveBudget(SolveBudget parent, long timeLimit, long maxAssignments)
+    {
+        this.parent = parent;
+        this.deadline = timeLimit > 0 ? System.nanoTime() + timeLimit * 1000000 : Long.MAX_VALUE;
+        this.maxAssignments = maxAssignments > 0 ? maxAssignments : Long.MAX_VALUE;
+    }
+
+    /** Stop any solve using this budget, or a child of it, at its next check. */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /** @return True if this budget or its parent has been cancelled. */
+    public boolean isCancelled()
+    {
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+
+    /**
+     * Check whether the solve should stop.
+     *
+     * @param assignments The number of assignments made so far by the solve.
+     * @return True if the budget has run out.
+     */
+    public boolean isExhausted(long assignments)
+    {
+        return cancelled || assignments >= maxAssignments
+                || (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0)
+                || (parent != null && parent.isExhausted(assignments));
+    }
+}
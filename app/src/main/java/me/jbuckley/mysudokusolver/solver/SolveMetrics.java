@@ -0,0 +1,124 @@
+package me.jbuckley.mysudokusolver.solver;
+
+/**
+ * Records search statistics of a single solve, timed with System.nanoTime(). Not thread safe, so
+ * each solve in progress needs its own SolveMetrics.
+ */
+public class SolveMetrics implements SolveRecorder
+{
+    private long nodes;
+    private long backtracks;
+    private long propagations;
+    private long wipeouts;
+    private int maxDepth;
+
+    private long startTime;
+    private long totalNanos;
+    private long propagationStartTime;
+    private long propagationNanos;
+
+    @Override
+    public void solveStarted()
+    {
+        nodes = 0;
+        backtracks = 0;
+        propagations = 0;
+        wipeouts = 0;
+        maxDepth = 0;
+        totalNanos = 0;
+        propagationNanos = 0;
+
+        startTime = System.nanoTime();
+    }
+
+    @Override
+    public void solveFinished()
+    {
+        totalNanos = System.nanoTime() - startTime;
+    }
+
+    @Override
+    public void nodeVisited(int depth)
+    {
+        nodes++;
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+    }
+
+    @Override
+    public void backtracked()
+    {
+        backtracks++;
+    }
+
+    @Override
+    public void propagationStarted()
+    {
+        propagationStartTime = System.nanoTime();
+    }
+
+    @Override
+    public void propagationFinished(boolean wipedOut)
+    {
+        propagationNanos += System.nanoTime() - propagationStartTime;
+        propagations++;
+        if (wipedOut) {
+            wipeouts++;
+        }
+    }
+
+    /** @return The number of decisions made by the search. */
+    public long getNodes()
+    {
+        return nodes;
+    }
+
+    /** @return The number of failed decisions undone. */
+    public long getBacktracks()
+    {
+        return backtracks;
+    }
+
+    /** @return The number of times a decision was propagated. */
+    public long getPropagations()
+    {
+        return propagations;
+    }
+
+    /** @return The number of propagations which emptied a domain. */
+    public long getWipeouts()
+    {
+        return wipeouts;
+    }
+
+    /** @return The deepest decision made, counting from 0. */
+    public int getMaxDepth()
+    {
+        return maxDepth;
+    }
+
+    /** @return The total time taken by the solve, in nanoseconds. */
+    public long getTotalNanos()
+    {
+        return totalNanos;
+    }
+
+    /** @return The time spent propagating decisions, in nanoseconds. */
+    public long getPropagationNanos()
+    {
+        return propagationNanos;
+    }
+
+    /** @return The time spent searching, outside of propagation, in nanoseconds. */
+    public long getSearchNanos()
+    {
+        return totalNanos - propagationNanos;
+    }
+
+    /** @return The decisions made per second of the solve. */
+    public double getNodesPerSecond()
+    {
+        return totalNanos > 0 ? nodes * 1e9 / totalNanos : 0;
+    }
+}
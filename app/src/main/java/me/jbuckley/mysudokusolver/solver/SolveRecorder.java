@@ -0,0 +1,68 @@
+package me.jbuckley.mysudokusolver.solver;
+
+/**
+ * Receives events from a strategy while it solves, for gathering search statistics. Strategies
+ * default to NONE, whose empty methods are inlined away so that solving is not slowed down.
+ */
+public interface SolveRecorder
+{
+    /** Records nothing. */
+    SolveRecorder NONE = new SolveRecorder()
+    {
+        @Override
+        public void solveStarted()
+        {
+        }
+
+        @Override
+        public void solveFinished()
+        {
+        }
+
+        @Override
+        public void nodeVisited(int depth)
+        {
+        }
+
+        @Override
+        public void backtracked()
+        {
+        }
+
+        @Override
+        public void propagationStarted()
+        {
+        }
+
+        @Override
+        public void propagationFinished(boolean wipedOut)
+        {
+        }
+    };
+
+    /** Called before a strategy starts solving. */
+    void solveStarted();
+
+    /** Called once a strategy has finished solving. */
+    void solveFinished();
+
+    /**
+     * Called when the search makes a decision.
+     *
+     * @param depth The number of decisions above this one.
+     */
+    void nodeVisited(int depth);
+
+    /** Called when the search undoes a failed decision. */
+    void backtracked();
+
+    /** Called before propagating a decision. */
+    void propagationStarted();
+
+    /**
+     * Called after propagating a decision.
+     *
+     * @param wipedOut True if propagation emptied a domain.
+     */
+    void propagationFinished(boolean wipedOut);
+}
@@ -0,0 +1,211 @@
+package me.jbuckley.mysudokusolver.solver;
+
+/**
+ * Solves a puzzle repeatedly as its cells are corrected one at a time. The givens are held on a
+ * Bitboard which is updated in place, so an edit only recomputes the row, column and box of the
+ * edited cell rather than rebuilding the grid. Each solve counts solutions up to 2, trying the
+ * digits of the previous solution first so an unchanged solution is found again straight away.
+ * Adding a given which agrees with a unique solution cannot change it, so needs no search.
+ */
+public class SolveSession implements GridStrategy
+{
+    private final Bitboard givens = new Bitboard();
+    private final Bitboard work = new Bitboard();
+
+    private SolveRecorder recorder = SolveRecorder.NONE;
+    private SolveBudget budget = new SolveBudget();
+
+    // Number of pairs of peers given the same value.
+    private int clashes;
+
+    private char[] solution;
+    private int solutionCount;
+    private boolean timedOut;
+    private long assignments;
+    private long timeTaken;
+
+    /** Create a new SolveSession with an empty grid. */
+    public SolveSession()
+    {
+        givens.load(new char[Bitboard.CELLS]);
+    }
+
+    /**
+     * Update the givens to match the cells, then solve.
+     *
+     * @param cells The values of the Sudoku grid. ' ' is an empty cell.
+     * @return The first solution found, or null if there is none.
+     */
+    @Override
+    public char[] solve(char[] cells)
+    {
+        long start = System.nanoTime();
+        recorder.solveStarted();
+
+        // A unique solution survives adding givens which agree with it.
+        boolean unchanged = solutionCount == 1 && !timedOut;
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            char c = cells[cell];
+            int value = c >= '1' && c <= '9' ? c - '0' : 0;
+
+            if (value != givens.values[cell]) {
+                unchanged = unchanged && value != 0 && c == solution[cell];
+                edit(cell, value);
+            }
+        }
+
+        assignments = 0;
+        timedOut = false;
+
+        if (!unchanged) {
+            solveGivens();
+        }
+
+        recorder.solveFinished();
+        timeTaken = (System.nanoTime() - start) / 1000000;
+
+        return solution;
+    }
+
+    /** @return The number of solutions found by the last solve, up to 2. */
+    public int getSolutionCount()
+    {
+        return solutionCount;
+    }
+
+    @Override
+    public long getAssignments()
+    {
+        return assignments;
+    }
+
+    @Override
+    public long getTimeTaken()
+    {
+        return timeTaken;
+    }
+
+    @Override
+    public void setRecorder(SolveRecorder recorder)
+    {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void setBudget(SolveBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+
+    /**
+     * Change one given, keeping count of the peers given the same value.
+     *
+     * @param cell The cell index.
+     * @param value The digit 1-9, or 0 to clear the cell.
+     */
+    private void edit(int cell, int value)
+    {
+        for (int peer : ConstraintGraph.PEERS[cell]) {
+            int other = givens.values[peer];
+            if (other != 0) {
+                if (other == givens.values[cell]) {
+                    clashes--;
+                }
+                if (other == value) {
+                    clashes++;
+                }
+            }
+        }
+
+        givens.place(cell, value);
+    }
+
+    /** Count the solutions of the current givens, keeping the first one found. */
+    private void solveGivens()
+    {
+        char[] previous = solution;
+
+        solution = null;
+        solutionCount = 0;
+
+        if (clashes == 0 && !hasEmptyDomain()) {
+            work.copyFrom(givens);
+            search(0, previous);
+            assignments = work.getAssignments();
+        }
+
+        // Without a full count the result is unknown, so no solution is kept.
+        if (timedOut) {
+            solution = null;
+            solutionCount = 0;
+        }
+    }
+
+    /** @return True if any empty cell has no candidates left. */
+    private boolean hasEmptyDomain()
+    {
+        boolean result = false;
+
+        for (int cell = 0; cell < Bitboard.CELLS && !result; cell++) {
+            result = givens.domains[cell] == 0;
+        }
+
+        return result;
+    }
+
+    /**
+     * Assign the most constrained cell each of its candidates in turn, starting with its value in
+     * the previous solution.
+     *
+     * @param depth The number of decisions above this one.
+     * @param previous The previous solution, or null if there was none.
+     * @return True once a second solution has been found or the budget has run out.
+     */
+    private boolean search(int depth, char[] previous)
+    {
+        boolean result = false;
+
+        int cell = work.selectCell();
+        if (cell < 0) {
+            solutionCount++;
+            if (solutionCount == 1) {
+                solution = work.toCells();
+            }
+            result = solutionCount >= 2;
+        } else {
+            int candidates = work.domains[cell];
+            int preferred = previous == null ? 0 : candidates & (1 << (previous[cell] - '1'));
+
+            while (candidates != 0 && !result) {
+                int bit = preferred != 0 ? preferred : candidates & -candidates;
+                candidates ^= bit;
+                preferred = 0;
+
+                int checkpoint = work.checkpoint();
+                recorder.nodeVisited(depth);
+                timedOut = budget.isExhausted(work.getAssignments());
+
+                recorder.propagationStarted();
+                boolean consistent = !timedOut
+                        && work.assign(cell, Integer.numberOfTrailingZeros(bit));
+                recorder.propagationFinished(!consistent);
+
+                result = timedOut || (consistent && search(depth + 1, previous));
+
+                // Solutions are copied out, so the board is always restored.
+                work.undo(checkpoint);
+                if (!result) {
+                    recorder.backtracked();
+                }
+            }
+        }
+
+        return result;
+    }
+}
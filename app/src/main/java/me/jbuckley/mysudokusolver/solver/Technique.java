@@ -0,0 +1,18 @@
+package me.jbuckley.mysudokusolver.solver;
+
+/**
+ * The logical techniques applied by the LogicEngine, in the order they are tried. The order is
+ * also the difficulty, so a puzzle is as hard as the last technique it needs.
+ */
+public enum Technique
+{
+    NAKED_SINGLE,
+    HIDDEN_SINGLE,
+    NAKED_PAIR,
+    HIDDEN_PAIR,
+    POINTING_PAIR,
+    BOX_LINE_REDUCTION,
+    NAKED_TRIPLE,
+    HIDDEN_TRIPLE,
+    X_WING
+}
@@ -0,0 +1,548 @@
+package me.jbuckley.mysudokusolver.solver;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Searches the Sudoku CSP with forward checking, arc consistency or singleton arc consistency
+ * maintained over its not-equal constraints, like the CspGridStrategy strategies of the same
+ * names, or with each unit kept consistent as a whole by an all-different propagator. Rather
+ * than copying every domain at each level of the search, each change is pushed onto the int[]
+ * trail of a DomainTrail and popped back off when a branch fails, so a search allocates nothing.
+ * By default the cell with the smallest domain is assigned next, and dom/wdeg and impact based
+ * orderings can be chosen instead with any level of consistency. A restart keeps the constraint
+ * weights and impacts learned by the earlier solves of the puzzle.
+ */
+public class TrailSolver implements RandomizedStrategy
+{
+    /** The consistency maintained after each assignment. */
+    public enum Consistency
+    {
+        /** The assigned digit is removed from the domains of the cell's peers. */
+        FORWARD_CHECKING,
+        /** As forward checking, repeated for every cell left with a single candidate. */
+        GAC,
+        /**
+         * As GAC, then each row, column and box is made consistent as a whole by an AllDifferent
+         * propagator, which also removes the candidates excluded by hidden singles and by naked
+         * and hidden subsets. A unit found unable to hold every digit adds no dom/wdeg weight.
+         */
+        ALL_DIFFERENT,
+        /** As GAC, then every candidate that GAC alone shows has no solution is removed. */
+        SAC
+    }
+
+    /**
+     * The order in which the search assigns cells. A cell with a single candidate left is always
+     * assigned first.
+     */
+    public enum Ordering
+    {
+        /** The cell with the smallest domain. */
+        DOM,
+        /**
+         * The cell with the smallest domain relative to the weighted degree of its constraints
+         * with unassigned cells, where each constraint is weighted by the number of domains it
+         * has wiped out.
+         */
+        DOM_WDEG,
+        /**
+         * The cell whose candidates are expected to leave the least of the search space when
+         * assigned, trying first the candidate expected to leave the most.
+         */
+        IMPACT
+    }
+
+    // The natural log of each domain size, for measuring the size of the search space.
+    private static final double[] LOG_SIZES = new double[Bitboard.SIZE + 1];
+
+    static {
+        for (int size = 1; size <= Bitboard.SIZE; size++) {
+            LOG_SIZES[size] = Math.log(size);
+        }
+    }
+
+    private final DomainTrail store = new DomainTrail();
+    private final AllDifferent allDifferent = new AllDifferent(store);
+    private final int[] singles = new int[Bitboard.CELLS];
+    private final Consistency consistency;
+    private final Ordering ordering;
+
+    // One more than the number of wipeouts caused by the constraint between each pair of cells.
+    private final int[] weights = new int[Bitboard.CELLS * Bitboard.CELLS];
+
+    // The average fraction of the search space removed by assigning each digit to each cell.
+    private final double[] impacts = new double[Bitboard.CELLS * Bitboard.SIZE];
+    private final int[] impactCounts = new int[Bitboard.CELLS * Bitboard.SIZE];
+
+    private SolveRecorder recorder = SolveRecorder.NONE;
+    private SolveBudget budget = new SolveBudget();
+    private Random random;
+
+    private boolean timedOut;
+    private long assignments;
+    private long timeTaken;
+
+    /**
+     * Create a new TrailSolver assigning the cell with the smallest domain next.
+     *
+     * @param consistency The consistency maintained after each assignment.
+     */
+    public TrailSolver(Consistency consistency)
+    {
+        this(consistency, Ordering.DOM);
+    }
+
+    /**
+     * Create a new TrailSolver.
+     *
+     * @param consistency The consistency maintained after each assignment.
+     * @param ordering The order in which cells are assigned.
+     */
+    public TrailSolver(Consistency consistency, Ordering ordering)
+    {
+        this.consistency = consistency;
+        this.ordering = ordering;
+    }
+
+    @Override
+    public char[] solve(char[] cells)
+    {
+        return solve(cells, true);
+    }
+
+    @Override
+    public char[] restart(char[] cells)
+    {
+        return solve(cells, false);
+    }
+
+    /**
+     * Attempt to solve the puzzle.
+     *
+     * @param cells The starting values of the Sudoku grid. ' ' is an empty cell.
+     * @param fresh False to keep the weights and impacts of the last solve.
+     * @return The solved cell values, or null if there is no solution.
+     */
+    private char[] solve(char[] cells, boolean fresh)
+    {
+        char[] result = null;
+
+        long start = System.nanoTime();
+        recorder.solveStarted();
+        timedOut = false;
+        assignments = 0;
+
+        if (load(cells, fresh) && search(0)) {
+            result = store.toCells();
+        }
+
+        recorder.solveFinished();
+        timeTaken = (System.nanoTime() - start) / 1000000;
+
+        return result;
+    }
+
+    /** @return False if the given values are inconsistent. */
+    private boolean load(char[] cells, boolean fresh)
+    {
+        boolean result = true;
+        store.reset();
+        if (fresh) {
+            Arrays.fill(weights, 1);
+        }
+
+        for (int cell = 0; cell < Bitboard.CELLS && result; cell++) {
+            char c = cells[cell];
+            if (c >= '1' && c <= '9') {
+                result = assign(cell, c - '1');
+            }
+        }
+
+        if (result && consistency == Consistency.ALL_DIFFERENT) {
+            result = allDifferent.propagate(0);
+        }
+        if (result && consistency == Consistency.SAC) {
+            result = singletonConsistency();
+        }
+        if (result && ordering == Ordering.IMPACT && fresh) {
+            result = probeImpacts();
+        }
+
+        return result;
+    }
+
+    /**
+     * Assign the most constrained cell each of its candidates in turn, backtracking on failure.
+     *
+     * @param depth The number of decisions above this one.
+     * @return True if every cell has been assigned.
+     */
+    private boolean search(int depth)
+    {
+        boolean result = false;
+
+        int cell = selectCell();
+        if (cell < 0) {
+            result = true;
+        } else {
+            int candidates = store.domains[cell];
+            while (candidates != 0 && !result && !timedOut) {
+                int bit = nextCandidate(cell, candidates);
+                int digit = Integer.numberOfTrailingZeros(bit);
+                candidates ^= bit;
+
+                int checkpoint = store.checkpoint();
+                recorder.nodeVisited(depth);
+                assignments++;
+                timedOut = budget.isExhausted(assignments);
+                double before = ordering == Ordering.IMPACT ? searchSpace() : 0;
+
+                recorder.propagationStarted();
+                boolean consistent = assign(cell, digit)
+                        && (consistency != Consistency.ALL_DIFFERENT
+                        || allDifferent.propagate(checkpoint))
+                        && (consistency != Consistency.SAC || singletonConsistency());
+                recorder.propagationFinished(!consistent);
+
+                if (ordering == Ordering.IMPACT) {
+                    recordImpact(cell * Bitboard.SIZE + digit, consistent, before);
+                }
+
+                result = consistent && !timedOut && search(depth + 1);
+                if (!result) {
+                    store.undo(checkpoint);
+                    recorder.backtracked();
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /** @return The next cell to assign, or -1 if every cell is assigned. */
+    private int selectCell()
+    {
+        int result = -1;
+
+        if (ordering == Ordering.DOM) {
+            result = random == null ? store.selectCell() : store.selectCell(random);
+        } else {
+            double best = Double.MAX_VALUE;
+            int ties = 0;
+
+            for (int cell = 0; cell < Bitboard.CELLS && best > 0; cell++) {
+                if (store.values[cell] == 0) {
+                    int domain = store.domains[cell];
+                    double score;
+
+                    if ((domain & (domain - 1)) == 0) {
+                        score = 0;
+                    } else if (ordering == Ordering.DOM_WDEG) {
+                        score = Integer.bitCount(domain) / (double) weightedDegree(cell);
+                    } else {
+                        score = remainingSpace(cell, domain);
+                    }
+
+                    if (score < best) {
+                        best = score;
+                        result = cell;
+                        ties = 1;
+                    } else if (score == best && random != null && random.nextInt(++ties) == 0) {
+                        result = cell;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /** @return The candidate bit to try next from the candidates left to try. */
+    private int nextCandidate(int cell, int candidates)
+    {
+        int result = candidates & -candidates;
+
+        if (ordering == Ordering.IMPACT) {
+            double least = impacts[cell * Bitboard.SIZE + Integer.numberOfTrailingZeros(result)];
+
+            for (int rest = candidates ^ result; rest != 0; rest &= rest - 1) {
+                int bit = rest & -rest;
+                double impact = impacts[cell * Bitboard.SIZE + Integer.numberOfTrailingZeros(bit)];
+                if (impact < least) {
+                    least = impact;
+                    result = bit;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /** @return The total weight of the constraints between the cell and unassigned cells. */
+    private int weightedDegree(int cell)
+    {
+        int result = 0;
+
+        int offset = cell * Bitboard.CELLS;
+        for (int peer : ConstraintGraph.PEERS[cell]) {
+            if (store.values[peer] == 0) {
+                result += weights[offset + peer];
+            }
+        }
+
+        return Math.max(result, 1);
+    }
+
+    /** Add a wipeout to the weight of the constraint between two cells. */
+    private void addWeight(int cell, int other)
+    {
+        weights[cell * Bitboard.CELLS + other]++;
+        weights[other * Bitboard.CELLS + cell]++;
+    }
+
+    /**
+     * @return The sum over the candidates in the domain of the fraction of the search space each
+     * is expected to leave, which is smallest for the cell whose assignment most reduces it.
+     */
+    private double remainingSpace(int cell, int domain)
+    {
+        double result = 0;
+
+        for (int rest = domain; rest != 0; rest &= rest - 1) {
+            result += 1 - impacts[cell * Bitboard.SIZE + Integer.numberOfTrailingZeros(rest)];
+        }
+
+        return result;
+    }
+
+    /** @return The natural log of the product of the domain sizes. */
+    private double searchSpace()
+    {
+        double result = 0;
+
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            result += LOG_SIZES[Integer.bitCount(store.domains[cell])];
+        }
+
+        return result;
+    }
+
+    /**
+     * Fold the impact of an assignment into the average for its cell and digit. A wipeout has
+     * the full impact of 1.
+     *
+     * @param literal The cell index times 9 plus the zero based digit.
+     * @param consistent False if the assignment wiped out a domain.
+     * @param before The search space before the assignment.
+     */
+    private void recordImpact(int literal, boolean consistent, double before)
+    {
+        double impact = consistent ? 1 - Math.exp(searchSpace() - before) : 1;
+        int count = impactCounts[literal];
+
+        impacts[literal] = (impacts[literal] * count + impact) / (count + 1);
+        impactCounts[literal] = count + 1;
+    }
+
+    /**
+     * Start the impact of every candidate from the effect of assigning it before the search. A
+     * candidate whose assignment wipes out a domain is removed.
+     *
+     * @return False if a domain was wiped out.
+     */
+    private boolean probeImpacts()
+    {
+        boolean result = true;
+
+        Arrays.fill(impacts, 0);
+        Arrays.fill(impactCounts, 0);
+
+        for (int cell = 0; cell < Bitboard.CELLS && result; cell++) {
+            int rest = store.values[cell] == 0 ? store.domains[cell] : 0;
+
+            for (; rest != 0 && result; rest &= rest - 1) {
+                int bit = rest & -rest;
+                double before = searchSpace();
+
+                int checkpoint = store.checkpoint();
+                boolean consistent = assign(cell, Integer.numberOfTrailingZeros(bit))
+                        && (consistency != Consistency.ALL_DIFFERENT
+                        || allDifferent.propagate(checkpoint));
+                recordImpact(cell * Bitboard.SIZE + Integer.numberOfTrailingZeros(bit), consistent,
+                        before);
+                store.undo(checkpoint);
+
+                // Forward checking leaves a cell with a single candidate for the search to assign.
+                if (!consistent) {
+                    int removal = store.checkpoint();
+                    int domain = store.restrict(cell, ~bit);
+                    result = domain != 0 && ((domain & (domain - 1)) != 0
+                            || consistency == Consistency.FORWARD_CHECKING || propagate(cell))
+                            && (consistency != Consistency.ALL_DIFFERENT
+                            || allDifferent.propagate(removal));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Assign a digit to a cell and propagate it.
+     *
+     * @return False if a domain was wiped out. The caller should undo to its checkpoint.
+     */
+    private boolean assign(int cell, int digit)
+    {
+        int bit = 1 << digit;
+        boolean result = store.restrict(cell, bit) != 0;
+
+        if (result) {
+            store.setValue(cell, digit);
+
+            if (consistency == Consistency.FORWARD_CHECKING) {
+                result = forwardCheck(cell, bit);
+            } else {
+                result = propagate(cell);
+            }
+        }
+
+        return result;
+    }
+
+    /** @return False if removing the digit from the cell's peers wiped out a domain. */
+    private boolean forwardCheck(int cell, int bit)
+    {
+        boolean result = true;
+
+        int[] peers = ConstraintGraph.PEERS[cell];
+        for (int i = 0; i < peers.length && result; i++) {
+            result = store.restrict(peers[i], ~bit) != 0;
+            if (!result) {
+                addWeight(cell, peers[i]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Make every not-equal constraint arc consistent after the cell's domain has become a single
+     * candidate. A constraint only removes a candidate once the other cell has a single one left,
+     * so the candidate is removed from the cell's peers, and so on for every peer left with a
+     * single candidate in turn.
+     *
+     * @return False if a domain was wiped out. The caller should undo to its checkpoint.
+     */
+    private boolean propagate(int cell)
+    {
+        boolean result = true;
+
+        int tail = 0;
+        singles[tail++] = cell;
+
+        while (tail > 0 && result) {
+            int single = singles[--tail];
+            int bit = store.domains[single];
+
+            int[] peers = ConstraintGraph.PEERS[single];
+            for (int i = 0; i < peers.length && result; i++) {
+                int peer = peers[i];
+                int domain = store.domains[peer];
+
+                if ((domain & bit) != 0) {
+                    domain = store.restrict(peer, ~bit);
+                    result = domain != 0;
+                    if (!result) {
+                        addWeight(single, peer);
+                    }
+
+                    if ((domain & (domain - 1)) == 0 && result) {
+                        singles[tail++] = peer;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove every candidate whose assignment GAC shows to be inconsistent, repeating until no
+     * more can be removed. Trying a candidate only counts as an assignment if the search makes it.
+     *
+     * @return False if a domain was wiped out. The caller should undo to its checkpoint.
+     */
+    private boolean singletonConsistency()
+    {
+        boolean result = true;
+        boolean changed = true;
+
+        while (changed && result && !timedOut) {
+            changed = false;
+
+            for (int cell = 0; cell < Bitboard.CELLS && result; cell++) {
+                int domain = store.domains[cell];
+                int candidates = domain;
+
+                while (candidates != 0 && (domain & (domain - 1)) != 0 && result) {
+                    int bit = candidates & -candidates;
+                    candidates ^= bit;
+
+                    int checkpoint = store.checkpoint();
+                    store.restrict(cell, bit);
+                    boolean supported = propagate(cell);
+                    store.undo(checkpoint);
+
+                    if (!supported) {
+                        domain = store.restrict(cell, ~bit);
+                        result = domain != 0 && ((domain & (domain - 1)) != 0 || propagate(cell));
+                        changed = true;
+                    }
+                }
+            }
+
+            timedOut = budget.isExhausted(assignments);
+        }
+
+        return result;
+    }
+
+    /** @return The assignments made by the search, not counting those tried by SAC. */
+    @Override
+    public long getAssignments()
+    {
+        return assignments;
+    }
+
+    @Override
+    public long getTimeTaken()
+    {
+        return timeTaken;
+    }
+
+    @Override
+    public void setRandom(Random random)
+    {
+        this.random = random;
+    }
+
+    @Override
+    public void setRecorder(SolveRecorder recorder)
+    {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void setBudget(SolveBudget budget)
+    {
+        this.budget = budget;
+    }
+
+    @Override
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+}
@@ -0,0 +1,71 @@
+package me.jbuckley.mysudokusolver.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads a corpus of puzzles, one puzzle of 81 characters per line. Corpora are read from the
+ * directory given by the corpora.dir system property, or else from the bundled samples. The
+ * samples hold only a few puzzles of each corpus, so their names end in -sample to keep their
+ * results from being taken for those of the full corpora.
+ */
+public final class Corpus
+{
+    private Corpus()
+    {
+    }
+
+    /**
+     * Load the puzzles of a corpus.
+     *
+     * @param name The corpus name, the file name without its .txt extension.
+     * @return The cell values of each puzzle. ' ' is an empty cell.
+     */
+    public static char[][] load(String name) throws IOException
+    {
+        List<char[]> puzzles = new ArrayList<>();
+
+        String directory = System.getProperty("corpora.dir");
+        InputStream in = directory != null
+                ? new FileInputStream(new File(directory, name + ".txt"))
+                : Corpus.class.getResourceAsStream("/corpora/" + name + ".txt");
+        if (in == null) {
+            throw new IOException("Corpus not found: " + name);
+        }
+
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(in, Charset.forName("US-ASCII")));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() >= 81) {
+                    puzzles.add(toCells(line));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        return puzzles.toArray(new char[puzzles.size()][]);
+    }
+
+    /** Convert a puzzle line to cell values, treating anything but a digit as an empty cell. */
+    private static char[] toCells(String line)
+    {
+        char[] result = new char[81];
+
+        for (int i = 0; i < result.length; i++) {
+            char c = line.charAt(i);
+            result[i] = c >= '1' && c <= '9' ? c : ' ';
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,136 @@
+package me.jbuckley.mysudokusolver.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+import me.jbuckley.mysudokusolver.solver.GridStrategy;
+import me.jbuckley.mysudokusolver.solver.SatSolver;
+import me.jbuckley.mysudokusolver.solver.SizedBitboardSolver;
+
+/**
+ * Shows how solve time grows from 9x9 to 25x25 grids with the SizedBitboardSolver and the
+ * SatSolver. Puzzles are generated from a fixed seed by shuffling a solved grid and keeping the
+ * same fraction of cells as givens at every size. Around half givens, large grids reach the
+ * hardest region for random puzzles, where a few take far longer than the rest.
+ */
+@State(Scope.Thread)
+public class GridSizeBenchmark
+{
+    private static final int PUZZLES = 32;
+    private static final long SEED = 20160401L;
+
+    @Param({"3", "4", "5"})
+    public int boxSize;
+
+    @Param({"0.65", "0.55"})
+    public double givens;
+
+    @Param({"sized", "sat"})
+    public String strategy;
+
+    private GridStrategy solver;
+    private char[][] puzzles;
+    private int next;
+
+    @Setup
+    public void setUp()
+    {
+        if (strategy.equals("sat")) {
+            solver = new SatSolver(boxSize);
+        } else {
+            solver = new SizedBitboardSolver(boxSize);
+        }
+
+        Random random = new Random(SEED);
+        puzzles = new char[PUZZLES][];
+        for (int i = 0; i < PUZZLES; i++) {
+            puzzles[i] = generate(random);
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public char[] solve()
+    {
+        char[] puzzle = puzzles[next];
+        next = (next + 1) % puzzles.length;
+
+        return solver.solve(puzzle);
+    }
+
+    /**
+     * Generate a puzzle with at least one solution. A solved pattern grid has its digits
+     * relabelled and its rows and columns shuffled within bands and stacks, then cells are kept
+     * as givens at random.
+     */
+    private char[] generate(Random random)
+    {
+        int size = boxSize * boxSize;
+        int[] digits = shuffledBands(random, size, 1);
+        int[] rows = shuffledBands(random, size, boxSize);
+        int[] cols = shuffledBands(random, size, boxSize);
+
+        char[] result = new char[size * size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int r = rows[row];
+                int c = cols[col];
+                int value = digits[(r * boxSize + r / boxSize + c) % size] + 1;
+
+                result[row * size + col] = random.nextDouble() < givens ? toChar(value) : ' ';
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Shuffle the indexes 0 to size - 1, keeping each band of consecutive indexes together.
+     *
+     * @param band The number of indexes in each band, or 1 to shuffle them freely.
+     */
+    private static int[] shuffledBands(Random random, int size, int band)
+    {
+        int bands = size / band;
+        int[] bandOrder = shuffle(random, bands);
+
+        int[] result = new int[size];
+        for (int b = 0; b < bands; b++) {
+            int[] within = shuffle(random, band);
+            for (int i = 0; i < band; i++) {
+                result[b * band + i] = bandOrder[b] * band + within[i];
+            }
+        }
+
+        return result;
+    }
+
+    /** @return The indexes 0 to length - 1 in a random order. */
+    private static int[] shuffle(Random random, int length)
+    {
+        int[] result = new int[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = i;
+        }
+
+        for (int i = length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = result[i];
+            result[i] = result[j];
+            result[j] = swap;
+        }
+
+        return result;
+    }
+
+    /** @return The cell character of a value, '1'-'9' then 'A'-'P'. */
+    private static char toChar(int value)
+    {
+        return value <= 9 ? (char) ('0' + value) : (char) ('A' + value - 10);
+    }
+}
@@ -0,0 +1,52 @@
+package me.jbuckley.mysudokusolver.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+import me.jbuckley.mysudokusolver.solver.BatchSolver;
+import me.jbuckley.mysudokusolver.solver.GridStrategy;
+
+/**
+ * Solves each puzzle of a corpus in turn with one of the strategies. Strategies are created by
+ * their BatchSolver names. By default the bundled samples are solved, and the build names the
+ * full corpora instead when they are given.
+ */
+@State(Scope.Thread)
+public class StrategyBenchmark
+{
+    @Param({"backtracking", "fc", "fc-dvo", "gac", "initial-gac", "sac", "initial-sac",
+            "fc-trail", "gac-trail", "sac-trail", "fc-wdeg", "gac-wdeg", "sac-wdeg", "fc-impact",
+            "gac-impact", "sac-impact", "bitboard-luby", "bitboard-geometric", "fc-wdeg-luby",
+            "gac-wdeg-luby", "alldiff-trail", "alldiff-wdeg", "nogood", "sat", "bitboard", "sized",
+            "logic", "dlx"})
+    public String strategy;
+
+    @Param({"easy-sample", "top95-sample", "hardest-sample", "17-clue-sample"})
+    public String corpus;
+
+    private GridStrategy solver;
+    private char[][] puzzles;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        solver = BatchSolver.createStrategy(strategy);
+        puzzles = Corpus.load(corpus);
+        next = 0;
+    }
+
+    @Benchmark
+    public char[] solve()
+    {
+        char[] puzzle = puzzles[next];
+        next = (next + 1) % puzzles.length;
+
+        return solver.solve(puzzle);
+    }
+}